@@ -0,0 +1,24 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every JMH benchmark of the project with the GC profiler, so allocation rates show up next to the timings
+ *
+ * Usage: BenchmarkRunner [benchmark regex]
+ */
+public final class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com\\.gmarshall\\.mandelbrot\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
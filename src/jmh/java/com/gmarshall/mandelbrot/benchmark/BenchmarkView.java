@@ -0,0 +1,43 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Util;
+import com.gmarshall.mandelbrot.util.Viewport;
+
+import java.math.BigDecimal;
+
+/**
+ * Typical views of the set, each stressing a different part of the escape time algorithm
+ */
+public enum BenchmarkView {
+
+    EXTERIOR(0, 0, 100), //default view, most pixels escape in a few iterations
+    BOUNDARY(-0.75, 0.1, 20000), //seahorse valley, slow escapes everywhere
+    INTERIOR(-0.2, 0, 2000); //main cardioid, most pixels run to the iteration limit
+
+    private final double real;
+    private final double imaginary;
+    private final int zoom;
+
+    BenchmarkView(double real, double imaginary, int zoom) {
+        this.real = real;
+        this.imaginary = imaginary;
+        this.zoom = zoom;
+    }
+
+    /**
+     * @param iterations - iteration limit
+     * @return - parameters of this view on the 1600x900 screen
+     */
+    public ViewParams params(int iterations) {
+        return ViewParams.centered(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, real, imaginary, zoom, 0, 0, iterations);
+    }
+
+    /**
+     * @param iterations - iteration limit
+     * @return - screen viewport on this view with Z0 = 0 and C = -1
+     */
+    public Viewport viewport(int iterations) {
+        return new Viewport(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, BigDecimal.valueOf(real), BigDecimal.valueOf(imaginary), zoom, iterations);
+    }
+}
@@ -0,0 +1,94 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of a palette switch with the cost of the frame
+ * The seahorse valley field is rendered once, then colored with every palette, banded and smooth.
+ * The render benchmark times the frame itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ColorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Frame {
+
+        @Param({"500"})
+        public int iterations;
+
+        RenderEngine engine;
+        ViewParams view;
+        IterationField field;
+        int[] pixels;
+
+        @Setup
+        public void setup() {
+            int width = Util.SCREEN_WIDTH;
+            int height = Util.SCREEN_HEIGHT;
+
+            engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+            view = new ViewParams(width, height, width /2 + 0.75 * 20000, height /2 + 0.1 * 20000, 20000, 0, 0, iterations);
+            field = new IterationField(width, height);
+            pixels = new int[width * height];
+            engine.render(view, field, () -> false);
+        }
+
+        @TearDown
+        public void tearDown() {
+            engine.shutdown();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Coloring {
+
+        @Param({"RAINBOW", "FIRE", "OCEAN", "GRAYSCALE"})
+        public Palette palette;
+
+        @Param({"false", "true"})
+        public boolean smooth;
+
+        Colorizer colorizer;
+
+        @Setup
+        public void setup(Frame frame) {
+            colorizer = new Colorizer(palette, smooth, frame.iterations);
+        }
+    }
+
+    @Benchmark
+    public IterationField render(Frame frame) {
+        frame.engine.render(frame.view, frame.field, () -> false);
+        return frame.field;
+    }
+
+    @Benchmark
+    public int[] colorize(Frame frame, Coloring coloring) {
+        frame.engine.colorize(frame.field, frame.pixels, coloring.colorizer);
+        return frame.pixels;
+    }
+}
@@ -0,0 +1,73 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.ReferenceOrbit;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Perturbation frames around the Misiurewicz point i at zooms double precision cannot reach
+ * The high precision reference orbit and the frame computed from it are timed apart, see PerturbationTest for the
+ * comparison with double precision.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DeepZoomBenchmark {
+
+    @Param({"1e20", "1e50", "1e80", "1e110"})
+    public double zoom;
+
+    @Param({"2000"})
+    public int iterations;
+
+    private RenderEngine engine;
+    private ViewParams view;
+    private int[] pixels;
+
+    @Setup
+    public void setup() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        view = deepView();
+        pixels = new int[Util.SCREEN_WIDTH * Util.SCREEN_HEIGHT];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public ReferenceOrbit referenceOrbit() {
+        return deepView().getReference();
+    }
+
+    @Benchmark
+    public int[] frame() {
+        engine.render(view, pixels);
+        return pixels;
+    }
+
+    private ViewParams deepView() {
+        return ViewParams.deep(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, BigDecimal.ZERO, BigDecimal.ONE, zoom, 0, 0, iterations);
+    }
+}
@@ -0,0 +1,68 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Early outs of the escape time algorithm on typical views, the cardioid and bulb check and the periodicity check
+ * Both only skip work on pixels inside the set, see EarlyOutTest for their escape times against the plain kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EarlyOutBenchmark {
+
+    @Param({"EXTERIOR", "BOUNDARY", "INTERIOR"})
+    public BenchmarkView view;
+
+    @Param({"2000"})
+    public int iterations;
+
+    @Param({"false", "true"})
+    public boolean bulbs;
+
+    @Param({"false", "true"})
+    public boolean period;
+
+    private RenderEngine engine;
+    private ViewParams params;
+    private int[] pixels;
+
+    @Setup
+    public void setup() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        engine.setBulbCheck(bulbs);
+        engine.setPeriodicityCheck(period);
+        params = view.params(iterations);
+        pixels = new int[params.getWidth() * params.getHeight()];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] render() {
+        engine.render(params, pixels);
+        return pixels;
+    }
+}
@@ -0,0 +1,82 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.EscapeState;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raising the iteration limit of the seahorse valley view step by step, like the "Increase Iterations" button does
+ * One operation is the first frame and every raise after it, resuming the sequences or computing each frame from scratch.
+ * See EscapeStateTest for the comparison of the frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IterationStepBenchmark {
+
+    @Param({"100"})
+    public int first;
+
+    @Param({"20"})
+    public int steps;
+
+    @Param({"10"})
+    public int increment;
+
+    private RenderEngine engine;
+    private IterationField field;
+
+    @Setup
+    public void setup() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        field = new IterationField(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public IterationField resumed() {
+        EscapeState state = new EscapeState(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT); //the first frame fills it
+
+        for (int step = 0; step <= steps; step++)
+            engine.resume(view(step), field, state, () -> false, null);
+
+        return field;
+    }
+
+    @Benchmark
+    public IterationField scratch() {
+        for (int step = 0; step <= steps; step++)
+            engine.render(view(step), field, () -> false);
+
+        return field;
+    }
+
+    private ViewParams view(int step) {
+        return new ViewParams(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, Util.SCREEN_WIDTH /2 + 0.75 * 20000, Util.SCREEN_HEIGHT /2 + 0.1 * 20000,
+                20000, 0, 0, first + step * increment);
+    }
+}
@@ -0,0 +1,89 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.ComplexNumber;
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escape time of the pixels of one 32x32 tile in the middle of each view, reported per pixel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@OperationsPerInvocation(KernelBenchmark.PIXELS)
+public class KernelBenchmark {
+
+    static final int SIDE = 32;
+    static final int PIXELS = SIDE * SIDE;
+
+    @Param({"EXTERIOR", "BOUNDARY", "INTERIOR"})
+    public BenchmarkView view;
+
+    @Param({"100", "1000", "10000"})
+    public int iterations;
+
+    private final double[] reals = new double[PIXELS];
+    private final double[] imaginaries = new double[PIXELS];
+    private final ComplexNumber[] points = new ComplexNumber[PIXELS];
+    private final ComplexNumber zero = new ComplexNumber(0, 0);
+
+    @Setup
+    public void setup() {
+        ViewParams params = view.params(iterations);
+
+        for (int i = 0; i < PIXELS; i++)
+        {
+            reals[i] = params.real(params.getWidth() /2 + i % SIDE);
+            imaginaries[i] = params.imaginary(params.getHeight() /2 + i / SIDE);
+            points[i] = new ComplexNumber(reals[i], imaginaries[i]);
+        }
+    }
+
+    @Benchmark
+    public int complexNumber() {
+        int sum = 0;
+
+        for (int i = 0; i < PIXELS; i++)
+            sum += MandelUtil.escapeTimeAlgorithm(zero, points[i], iterations);
+
+        return sum;
+    }
+
+    @Benchmark
+    public int primitive() {
+        int sum = 0;
+
+        for (int i = 0; i < PIXELS; i++)
+            sum += MandelUtil.escapeTime(0, 0, reals[i], imaginaries[i], iterations);
+
+        return sum;
+    }
+
+    @Benchmark
+    public int earlyOuts() {
+        int sum = 0;
+
+        for (int i = 0; i < PIXELS; i++)
+            sum += MandelUtil.escapeTime(0, 0, reals[i], imaginaries[i], iterations, true, true);
+
+        return sum;
+    }
+}
@@ -0,0 +1,76 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.Graph;
+import com.gmarshall.mandelbrot.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole paint of the Graph: background layer, orbit, dots, texts and the julia view, drawn into an offscreen image
+ * so no window is needed
+ * compose draws the background layer again at every paint, as after a new frame, instead of only copying it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compose;
+
+    @Param({"false", "true"})
+    public boolean stats;
+
+    private Graph graph;
+    private BufferedImage screen;
+    private Graphics2D graphics;
+    private final Color[] backgrounds = {Color.WHITE, Color.LIGHT_GRAY};
+    private int background;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        graph = new Graph(false);
+        graph.setSize(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT);
+        graph.setShowStats(stats);
+
+        if(!graph.awaitFrame(60_000))
+            throw new IllegalStateException("No frame after a minute");
+
+        screen = new BufferedImage(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        graphics = screen.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+        Util.renderEngine.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        if(compose)
+            graph.setBackground(backgrounds[background ^= 1]); //the layer is filled with it
+
+        graph.paint(graphics);
+        return screen;
+    }
+}
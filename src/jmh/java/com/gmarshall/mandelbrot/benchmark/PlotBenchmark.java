@@ -0,0 +1,78 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.FrameBuffer;
+import com.gmarshall.mandelbrot.render.Precision;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.util.Util;
+import com.gmarshall.mandelbrot.util.Viewport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full 1600x900 frame through Util.plotMandelbrot with the scalar and the SIMD kernel, in each number format
+ * Formats are forced whatever the zoom of the view, see PrecisionTest for the pixels each one gets wrong.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Thread)
+public class PlotBenchmark {
+
+    @Param({"EXTERIOR", "BOUNDARY", "INTERIOR"})
+    public BenchmarkView view;
+
+    @Param({"100", "1000", "5000"})
+    public int iterations;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"float", "double", "double-double"})
+    public String precision;
+
+    private Viewport viewport;
+    private FrameBuffer pixels;
+
+    @Setup
+    public void setup() {
+        if(kernel.equals("vector") && !RenderEngine.VECTOR_AVAILABLE)
+            throw new IllegalStateException("Vector kernel requires --add-modules jdk.incubator.vector");
+
+        viewport = view.viewport(iterations);
+        Util.renderEngine.setVectorKernel(kernel.equals("vector"));
+        Util.renderEngine.setPrecision(precision(precision));
+        pixels = new FrameBuffer(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT);
+    }
+
+    @Benchmark
+    public FrameBuffer plotMandelbrot() {
+        Util.plotMandelbrot(viewport, pixels);
+        return pixels;
+    }
+
+    /**
+     * @param label - name of a number format, as printed
+     * @return - the format of that name
+     */
+    private static Precision precision(String label) {
+        for (Precision precision : Precision.values())
+            if(precision.toString().equals(label))
+                return precision;
+
+        throw new IllegalArgumentException("Unknown number format " + label);
+    }
+}
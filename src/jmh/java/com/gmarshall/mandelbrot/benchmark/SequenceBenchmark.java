@@ -0,0 +1,47 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.util.Orbit;
+import com.gmarshall.mandelbrot.util.Viewport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orbit recomputed on every drag of the Z and C points, C = -1 is bounded so the orbit runs to the limit
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceBenchmark {
+
+    @Param({"100", "1000", "10000", "1000000"})
+    public int iterations;
+
+    private Viewport viewport;
+    private final Orbit orbit = new Orbit();
+
+    @Setup
+    public void setup() {
+        viewport = BenchmarkView.EXTERIOR.viewport(iterations); //C = -1, bounded
+    }
+
+    @Benchmark
+    public Orbit reCalculateSequence() {
+        viewport.computeOrbit(orbit);
+        return orbit;
+    }
+}
@@ -0,0 +1,73 @@
+package com.gmarshall.mandelbrot.benchmark;
+
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.TileCache;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames of a pan over the seahorse valley view, with and without the tile cache
+ * Every frame moves the view a few pixels, back and forth over a fixed stretch so the cost stays the same
+ * however long the measurement runs. See TileCacheTest for the comparison of the frames.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TileCacheBenchmark {
+
+    private static final int STEPS = 16; //frames from one end of the pan to the other
+
+    @Param({"500"})
+    public int iterations;
+
+    @Param({"40"})
+    public int pan;
+
+    @Param({"cached", "uncached"})
+    public String cache;
+
+    private RenderEngine engine;
+    private int[] pixels;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        engine.setTileCache(cache.equals("cached") ? new TileCache(64L << 20) : null);
+        pixels = new int[Util.SCREEN_WIDTH * Util.SCREEN_HEIGHT];
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public int[] panFrame() {
+        int position = frame++ % (2 * STEPS);
+        int offset = (position < STEPS ? position : 2 * STEPS - position) * pan;
+
+        engine.render(new ViewParams(Util.SCREEN_WIDTH, Util.SCREEN_HEIGHT, Util.SCREEN_WIDTH /2 + 0.75 * 20000 + offset,
+                Util.SCREEN_HEIGHT /2 + 0.1 * 20000 + offset /2, 20000, 0, 0, iterations), pixels);
+
+        return pixels;
+    }
+}
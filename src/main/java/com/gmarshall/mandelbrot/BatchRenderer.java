@@ -0,0 +1,270 @@
+package com.gmarshall.mandelbrot;
+
+import com.gmarshall.mandelbrot.io.FieldStore;
+import com.gmarshall.mandelbrot.io.PngStreamWriter;
+import com.gmarshall.mandelbrot.io.StripSink;
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Options;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Renders the mandelbrot set to a file without any window, for machines with no display
+ * Uses the same render engine as the screen. The image is rendered in horizontal strips written out as soon as
+ * they are done, so memory stays bounded by the strip size whatever the image size.
+ * With --store the escape times are kept in a memory mapped file first: a stopped render started again with the same
+ * options only renders the tiles still missing, then the image is colored from the file.
+ *
+ * Usage: BatchRenderer --output file [options]
+ *   --center re,im      point in the middle of the image (default 0,0), any number of digits
+ *   --zoom pixels       pixels per grid unit (default 100), computed in floats, doubles or double-doubles depending on it
+ *                       (see Precision), past 1e12 the image is rendered by perturbation
+ *   --z0 re,im          starting point of the sequence (default 0,0)
+ *   --iterations n      iteration limit (default 100)
+ *   --size WxH          image size (default 1600x900)
+ *   --strip rows        rows rendered at once (default 256)
+ *   --format png|raw    PNG, or raw RGB 8 bits per channel row by row (default png)
+ *   --palette name      rainbow, fire, ocean or grayscale (default rainbow)
+ *   --smooth true|false continuous coloring instead of bands (default false)
+ *   --antialias n       supersamples the pixels on edges with n x n samples, 0 for none (default 0), not with --store
+ *   --store file        keeps the escape times in this file and resumes from it, kept once the image is written
+ */
+public final class BatchRenderer {
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        BigDecimal[] center;
+        BigDecimal[] z0;
+        double zoom;
+        int iterations;
+        int[] size;
+        int strip;
+        int antialias;
+        Palette palette;
+
+        try
+        {
+            options = Options.parse(args);
+            center = Options.getComplex(options, "center", "0,0");
+            z0 = Options.getComplex(options, "z0", "0,0");
+            zoom = Options.getDouble(options, "zoom", "100");
+            iterations = Options.getInt(options, "iterations", "100");
+            size = Options.getSize(options, "size", "1600x900");
+            strip = Options.getInt(options, "strip", "256");
+            antialias = Options.getInt(options, "antialias", "0");
+            palette = Palette.parse(options.getOrDefault("palette", "rainbow"));
+        }
+        catch (IllegalArgumentException e)
+        {
+            usage(e.getMessage());
+            return;
+        }
+
+        int width = size[0];
+        int height = size[1];
+        String format = options.getOrDefault("format", "png");
+
+        if(!options.containsKey("output"))
+            usage(null);
+        if(!(zoom > 0))
+            usage("--zoom must be positive: " + zoom);
+        if(iterations < 1)
+            usage("--iterations must be at least 1: " + iterations);
+        if(strip < 1)
+            usage("--strip must be at least 1 row: " + strip);
+        if(!format.equals("png") && !format.equals("raw"))
+            usage("--format must be png or raw: " + format);
+        if(antialias < 0)
+            usage("--antialias must be 0 or more: " + antialias);
+        if(antialias != 0 && options.containsKey("store"))
+            usage("--antialias cannot be combined with --store, the store only keeps one sample per pixel");
+
+        boolean png = format.equals("png");
+        Colorizer colorizer = new Colorizer(palette, Boolean.parseBoolean(options.getOrDefault("smooth", "false")), iterations);
+
+        ViewParams view = ViewParams.centered(width, height, center[0], center[1], zoom, z0[0].doubleValue(), z0[1].doubleValue(), iterations);
+        RenderEngine engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        FieldStore store = null;
+
+        try
+        {
+            if(options.containsKey("store"))
+            {
+                //only the options changing the escape times, the colors can change between runs
+                String job = String.join(" ", options.getOrDefault("center", "0,0"), options.getOrDefault("zoom", "100"),
+                        options.getOrDefault("z0", "0,0"), String.valueOf(iterations), width + "x" + height);
+
+                store = FieldStore.open(Path.of(options.get("store")), view, job);
+                System.out.printf("%d of %d tiles already done%n", store.getCompletedTiles(), store.getTileCount());
+                store.render(engine);
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            engine.shutdown();
+
+            if(store != null)
+                store.close();
+
+            throw e;
+        }
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(options.get("output")), 1 << 16))
+        {
+            if(png)
+            {
+                try (PngStreamWriter writer = new PngStreamWriter(out, width, height))
+                {
+                    export(engine, store, view, strip, colorizer, antialias, writer::writeRows);
+                }
+            }
+            else
+            {
+                byte[] row = new byte[width * 3];
+
+                export(engine, store, view, strip, colorizer, antialias, (pixels, rows) -> writeRaw(out, pixels, rows, width, row));
+            }
+        }
+        finally
+        {
+            engine.shutdown();
+
+            if(store != null)
+                store.close();
+        }
+
+        System.out.printf("%dx%d, %d iterations in %.2f s, computed in %s%n", width, height, iterations, (System.nanoTime() - start) / 1e9,
+                engine.getPrecision(view));
+    }
+
+    /**
+     * Renders a view strip by strip
+     * @param engine - engine running the tiles
+     * @param view - whole image
+     * @param strip - maximum rows per strip
+     * @param colorizer - colors of the image
+     * @param sink - receives each strip in order, from the top
+     * @throws IOException - if the sink fails
+     */
+    public static void render(RenderEngine engine, ViewParams view, int strip, Colorizer colorizer, StripSink sink) throws IOException {
+        render(engine, view, strip, colorizer, 0, sink);
+    }
+
+    /**
+     * Renders a view strip by strip, supersampling the pixels on edges
+     * Each strip is rendered with the row above and below it, so the edges on the borders of the strips are found too.
+     * @param engine - engine running the tiles
+     * @param view - whole image
+     * @param strip - maximum rows per strip
+     * @param colorizer - colors of the image
+     * @param antialias - samples per side of an edge pixel, 0 for no antialiasing
+     * @param sink - receives each strip in order, from the top
+     * @throws IOException - if the sink fails
+     */
+    public static void render(RenderEngine engine, ViewParams view, int strip, Colorizer colorizer, int antialias, StripSink sink) throws IOException {
+        if(strip < 1)
+            throw new IllegalArgumentException("Strips must have at least one row: " + strip);
+
+        int width = view.getWidth();
+        int halo = antialias < 2 ? 0 : 1;
+        IterationField field = null;
+        int[] pixels = null;
+        int[] rendered = null;
+
+        for (int y = 0; y < view.getHeight(); y += strip)
+        {
+            int rows = Math.min(strip, view.getHeight() - y);
+            int top = Math.max(0, y - halo);
+            int height = Math.min(view.getHeight(), y + rows + halo) - top;
+
+            if (field == null || field.getHeight() != height) //first, last and halo strips differ in height
+            {
+                field = new IterationField(width, height);
+                rendered = new int[width * height];
+            }
+
+            ViewParams region = strip(view, top, height);
+            engine.render(region, field, () -> false);
+            engine.colorize(field, rendered, colorizer);
+
+            if (halo == 0)
+            {
+                sink.accept(rendered, rows);
+                continue;
+            }
+
+            if (pixels == null)
+                pixels = new int[width * Math.min(strip, view.getHeight())];
+
+            engine.antialias(region, field, rendered, colorizer, antialias, Integer.MAX_VALUE, () -> false, null);
+            System.arraycopy(rendered, (y - top) * width, pixels, 0, rows * width);
+            sink.accept(pixels, rows);
+        }
+    }
+
+    /**
+     * Colors the image from the store if there is one, renders it strip by strip otherwise
+     */
+    private static void export(RenderEngine engine, FieldStore store, ViewParams view, int strip, Colorizer colorizer,
+                               int antialias, StripSink sink) throws IOException {
+        if(store != null)
+        {
+            store.export(colorizer, sink);
+        }
+        else
+        {
+            render(engine, view, strip, colorizer, antialias, sink);
+        }
+    }
+
+    /**
+     * @param view - whole image
+     * @param y - first row of the strip
+     * @param rows - height of the strip
+     * @return - parameters of the rows of the image, as an image of their own
+     */
+    public static ViewParams strip(ViewParams view, int y, int rows) {
+        return view.region(0, y, view.getWidth(), rows);
+    }
+
+    private static void writeRaw(OutputStream out, int[] pixels, int rows, int width, byte[] row) throws IOException {
+        for (int y = 0; y < rows; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                int pixel = pixels[y*width + x];
+                row[x*3] = (byte) (pixel >> 16);
+                row[x*3 + 1] = (byte) (pixel >> 8);
+                row[x*3 + 2] = (byte) pixel;
+            }
+
+            out.write(row);
+        }
+    }
+
+    /**
+     * Prints the usage and exits
+     * @param problem - what is wrong with the options, null if one is missing
+     */
+    private static void usage(String problem) {
+        if(problem != null)
+            System.err.println(problem);
+
+        System.err.println("Usage: BatchRenderer --output file [--center re,im] [--zoom pixels] [--z0 re,im] "
+                + "[--iterations n] [--size WxH] [--strip rows] [--format png|raw] [--palette name] [--smooth true|false] [--antialias n] [--store file]");
+        System.exit(2);
+    }
+}
@@ -1,29 +1,88 @@
 package com.gmarshall.mandelbrot;
 
-import com.gmarshall.mandelbrot.util.ComplexNumber;
+import com.gmarshall.mandelbrot.render.AsyncRenderer;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderMetrics;
+import com.gmarshall.mandelbrot.render.RenderMode;
+import com.gmarshall.mandelbrot.util.Orbit;
+import com.gmarshall.mandelbrot.util.Viewport;
 
 import javax.swing.JPanel;
 
 import java.awt.Button;
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.TextField;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import static com.gmarshall.mandelbrot.util.Util.*;
 
 /**
  * Screen element to display all operations for the mandelbrot set
+ * Drawn in layers: the fractal and the axes are composed into a background image once per frame or grid change,
+ * the orbit, the dots and the texts are drawn over it at every paint. Moving C only repaints the region its overlays
+ * covered before and after the move.
  */
 public class Graph extends JPanel implements MouseListener, MouseMotionListener {
 
+    private static final Font FONT = new Font("Arial", Font.PLAIN, 20);
+    private static final int ANTIALIAS_GRID = 4; //16 samples per edge pixel
+
+    private final AsyncRenderer renderer = new AsyncRenderer(renderEngine, SCREEN_WIDTH, SCREEN_HEIGHT, this::repaint);
+    private final JuliaPanel julia = new JuliaPanel(renderEngine, JULIA_WIDTH, JULIA_HEIGHT);
+
+    //view state, only touched by the event thread, the render thread gets an immutable snapshot of it
+    private Viewport viewport = Viewport.initial(SCREEN_WIDTH, SCREEN_HEIGHT);
+    private final Orbit orbit = new Orbit(); //The sequence of complex numbers
+    private int[] orbitX = new int[64]; //distinct screen positions of the sequence, see updateOrbit
+    private int[] orbitY = new int[64];
+    private int orbitPixels;
+    private final BitSet orbitDrawn = new BitSet(); //pixels in orbitX and orbitY
+    private Rectangle orbitBounds;
+    private boolean isXSelected = false; //clicked the red dot
+    private boolean isCSelected = false; //clicked the green dot
+    private boolean showStats = false; //render stats overlay
+
+    //fractal and axes layers, only touched by the event thread
+    private final BufferedImage background = new BufferedImage(SCREEN_WIDTH, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    private AsyncRenderer.Frame backgroundFrame; //frame and grid the background was composed from
+    private Viewport backgroundGrid;
+
     public Graph() {
+        this(true);
+    }
+
+    /**
+     * @param controls - false for a graph without its buttons and without its metrics in JMX, for drawing it offscreen
+     *                 where AWT controls cannot be created
+     */
+    public Graph(boolean controls) {
+        renderEngine.setTileCache(tileCache); //pans only compute the strips coming into view
+
+        julia.setBounds(10, SCREEN_HEIGHT - 80 - JULIA_HEIGHT, JULIA_WIDTH, JULIA_HEIGHT);
+
+        updateOrbit();
+        renderMandelbrot();
+        julia.show(viewport);
 
+        setLayout(null);
+        add(julia);
+
+        if(controls)
+            addControls();
+    }
+
+    private void addControls() {
         TextField iterationChange = new TextField("1");
         iterationChange.setBounds(SCREEN_WIDTH - 145, 55, 50, 20);
         iterationChange.addKeyListener(new KeyAdapter() {
@@ -44,55 +103,265 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
         Button decreaseIterations = new Button("Decrease Iterations");
         Button zoomIn = new Button("Zoom in");
         Button zoomOut = new Button("Zoom out");
+        Button nextPalette = new Button("Next Palette");
+        Button smoothColors = new Button("Smooth Colors");
+        Button renderStats = new Button("Render Stats");
+        Button antialias = new Button("Antialias");
+        Button subdivision = new Button("Subdivision");
 
         increaseIterations.setBounds(SCREEN_WIDTH - 300, 40, 150, 30);
         decreaseIterations.setBounds(SCREEN_WIDTH - 300, 70, 150, 30);
         zoomIn.setBounds(SCREEN_WIDTH /2 - 100, SCREEN_HEIGHT - 70, 100, 20);
         zoomOut.setBounds(SCREEN_WIDTH /2, SCREEN_HEIGHT - 70, 100, 20);
-
-        increaseIterations.addActionListener(e -> changeIterations(Integer.parseInt(iterationChange.getText()), Graph.this));
-        decreaseIterations.addActionListener(e -> changeIterations(-Integer.parseInt(iterationChange.getText()), Graph.this));
-        zoomIn.addActionListener(e -> zoomScreen(zoomValue, Graph.this));
-        zoomOut.addActionListener(e -> zoomScreen(-zoomValue /2, Graph.this));
+        nextPalette.setBounds(SCREEN_WIDTH - 300, SCREEN_HEIGHT - 70, 100, 20);
+        smoothColors.setBounds(SCREEN_WIDTH - 200, SCREEN_HEIGHT - 70, 100, 20);
+        renderStats.setBounds(SCREEN_WIDTH - 145, 80, 100, 20);
+        antialias.setBounds(SCREEN_WIDTH - 400, SCREEN_HEIGHT - 70, 100, 20);
+        subdivision.setBounds(SCREEN_WIDTH - 500, SCREEN_HEIGHT - 70, 100, 20);
+
+        increaseIterations.addActionListener(e -> updateScreen(viewport.withIterationsChanged(Integer.parseInt(iterationChange.getText()))));
+        decreaseIterations.addActionListener(e -> updateScreen(viewport.withIterationsChanged(-Integer.parseInt(iterationChange.getText()))));
+        zoomIn.addActionListener(e -> updateScreen(viewport.zoomedBy(2)));
+        zoomOut.addActionListener(e -> updateScreen(viewport.zoomedBy(0.5)));
+        nextPalette.addActionListener(e -> setColors(Palette.values()[(renderer.getPalette().ordinal() + 1) % Palette.values().length],
+                renderer.isSmooth()));
+        smoothColors.addActionListener(e -> setColors(renderer.getPalette(), !renderer.isSmooth()));
+        renderStats.addActionListener(e -> setShowStats(!showStats));
+        antialias.addActionListener(e -> setAntialias(renderer.getAntialias() == 0 ? ANTIALIAS_GRID : 0));
+        subdivision.addActionListener(e -> setMode(renderEngine.getMode() == RenderMode.BRUTE_FORCE ? RenderMode.SUBDIVISION : RenderMode.BRUTE_FORCE));
         //endregion
 
-        pixels = new Color[SCREEN_WIDTH][SCREEN_WIDTH];
-
-        plotMandelbrot(pixels);
-        reCalculateSequence();
+        renderer.getMetrics().register("main");
+        julia.getMetrics().register("julia");
 
-        setLayout(null);
         add(iterationChange);
         add(increaseIterations);
         add(decreaseIterations);
         add(zoomIn);
         add(zoomOut);
+        add(nextPalette);
+        add(smoothColors);
+        add(renderStats);
+        add(antialias);
+        add(subdivision);
         addMouseListener(this);
         addMouseMotionListener(this);
     }
 
     @Override
     public void paint(Graphics g) {
-        g.clearRect(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
-        g.setFont(new Font("Arial", Font.PLAIN, 20));
+        PaintEvent event = new PaintEvent();
+        long start = System.nanoTime();
+        event.begin();
 
-        drawMandelbrot(g);
-        drawGraph(g);
+        g.setFont(FONT);
+
+        drawBackground(g);
         drawSequence(g);
 
         //UI
         drawZPoint(g);
         drawCPoint(g);
         drawIterationCount(g);
+        drawFrameLatency(g);
+
+        if(showStats)
+            drawRenderStats(g);
+
+        paintChildren(g); //julia view
+
+        event.view = "main";
+        event.commit();
+        renderer.getMetrics().painted(System.nanoTime() - start);
+    }
+
+    @Override
+    public void setBackground(Color color) {
+        super.setBackground(color);
+        backgroundFrame = null; //the layer is filled with it, compose it again
+    }
+
+    /**
+     * @param showStats - true to draw the render stats over the fractal
+     */
+    public void setShowStats(boolean showStats) {
+        this.showStats = showStats;
+        repaint();
+    }
+
+    /**
+     * Waits for the full resolution frame of the current view, for a graph drawn offscreen that no repaint reaches
+     * Only the painting thread may call this
+     * @param timeout - longest wait, in milliseconds
+     * @return - false if the frame was not done in time
+     * @throws InterruptedException - interrupted while waiting
+     */
+    public boolean awaitFrame(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        AsyncRenderer.Frame frame;
+
+        while ((frame = renderer.acquireFrame()) == null || !frame.isComplete())
+        {
+            if(System.currentTimeMillis() > deadline)
+                return false;
+
+            Thread.sleep(10);
+        }
+
+        return true;
+    }
+
+    /**
+     * Requests a new frame of the mandelbrot set for the current parameters, rendered in the background
+     * The screen keeps the previous frame until the new one is complete
+     */
+    public void renderMandelbrot() {
+        renderer.request(viewport::toViewParams); //deep zooms compute their reference orbit, never on the event thread
+        repaint();
+    }
+
+    /**
+     * Switches to a new view and refreshes the display
+     * @param next - view to show
+     */
+    private void updateScreen(Viewport next) {
+        viewport = next;
+        updateOrbit();
+        renderMandelbrot();
+        julia.show(viewport);
+    }
+
+    /**
+     * Changes the colors of both views, their frames are recolored without being computed again
+     * @param palette - gradient of the escape times
+     * @param smooth - true to color with the continuous escape time instead of bands
+     */
+    private void setColors(Palette palette, boolean smooth) {
+        renderer.setColors(palette, smooth);
+        julia.setColors(palette, smooth);
+    }
+
+    /**
+     * Turns antialiasing of both views on or off, their last frames are antialiased without being computed again
+     * @param grid - cells per side of a supersampled edge pixel, 0 for no antialiasing
+     */
+    private void setAntialias(int grid) {
+        renderer.setAntialias(grid);
+        julia.setAntialias(grid);
+    }
+
+    /**
+     * Switches the way both views pick the pixels they compute, their frames are computed again from scratch
+     * @param mode - brute force or subdivision
+     */
+    private void setMode(RenderMode mode) {
+        renderEngine.setMode(mode);
+        renderer.rerender(viewport::toViewParams);
+        julia.rerender();
+        repaint();
+    }
+
+    /**
+     * Computes the sequence again and keeps the screen positions worth drawing
+     * Points off the screen are dropped and a converging or cycling orbit only keeps each pixel once,
+     * so drawing it costs the same at any iteration count. Nothing is allocated once the arrays fit the orbit.
+     */
+    private void updateOrbit() {
+        int margin = dotSize /2; //dots centered just off the screen still show
+        int stride = SCREEN_WIDTH + 2*margin;
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+
+        for (int i = 0; i < orbitPixels; i++) //forget the previous orbit
+            orbitDrawn.clear((orbitY[i] + margin)*stride + orbitX[i] + margin);
+
+        viewport.computeOrbit(orbit);
+        orbitPixels = 0;
+
+        for (int i = 0; i < orbit.getLength(); i++) {
+            int x = viewport.fromCoordsToScreenPos(orbit.getReal(i) ,true);
+            int y = viewport.fromCoordsToScreenPos(orbit.getImaginary(i), false);
+
+            if(x < -margin || x >= SCREEN_WIDTH + margin || y < -margin || y >= SCREEN_HEIGHT + margin)
+                continue;
+
+            int pixel = (y + margin)*stride + x + margin;
+
+            if(orbitDrawn.get(pixel))
+                continue;
+
+            if(orbitPixels == orbitX.length)
+            {
+                orbitX = Arrays.copyOf(orbitX, orbitPixels * 2);
+                orbitY = Arrays.copyOf(orbitY, orbitPixels * 2);
+            }
+
+            orbitDrawn.set(pixel);
+            orbitX[orbitPixels] = x;
+            orbitY[orbitPixels++] = y;
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+
+        orbitBounds = orbitPixels == 0 ? new Rectangle(0, 0, -1, -1) //empty, see Rectangle#add
+                : new Rectangle(minX - dotSize/2, minY - dotSize/2, maxX - minX + dotSize + 1, maxY - minY + dotSize + 1);
+    }
+
+    /**
+     * @return - region covered by everything that moves with C: the orbit, the green dot and its coordinates
+     */
+    private Rectangle cOverlayBounds() {
+        FontMetrics metrics = getFontMetrics(FONT);
+        Rectangle bounds = new Rectangle(orbitBounds);
+
+        bounds.add(new Rectangle(viewport.getCPosX() - dotSize/2, viewport.getCPosY() - dotSize/2, dotSize + 1, dotSize + 1));
+        bounds.add(new Rectangle(10, 60 - metrics.getAscent(), metrics.stringWidth(viewport.convertCToCoordsString()), metrics.getHeight()));
+
+        return bounds;
     }
 
     //region Display
 
+    /**
+     * Draws the fractal and the axes layers, composed again only when the frame or the grid changed
+     * @param g -
+     */
+    private void drawBackground(Graphics g) {
+        AsyncRenderer.Frame frame = renderer.acquireFrame();
+
+        if(frame != backgroundFrame || !viewport.sameGrid(backgroundGrid))
+        {
+            Graphics layer = background.getGraphics();
+            layer.setFont(FONT);
+            layer.setColor(getBackground());
+            layer.fillRect(0, 0, SCREEN_WIDTH, SCREEN_HEIGHT);
+
+            drawMandelbrot(layer, frame);
+            drawGraph(layer);
+
+            layer.dispose();
+            backgroundFrame = frame;
+            backgroundGrid = viewport;
+        }
+
+        g.drawImage(background, 0, 0, null); //only the clipped region is copied
+
+        if(frame != null)
+            renderer.frameDisplayed(frame);
+    }
+
     /**
      * Displays the 2D graph
      * @param g -
      */
     private void drawGraph(Graphics g) {
+        int gridCenterX = viewport.getGridCenterX(); //clamped far off the screen when deep zooms leave the origin behind
+        int gridCenterY = viewport.getGridCenterY();
+
         g.setColor(Color.DARK_GRAY);
 
         //X,Y axes
@@ -101,13 +370,14 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
 
         //X and Y intervals with numbers
         for (int i = -8; i < 9; i++) {
-            g.drawLine(gridCenterX + i* zoomValue, gridCenterY - intervalSize,
-                    gridCenterX + i* zoomValue, gridCenterY + intervalSize); //X
-            g.drawLine(gridCenterX - intervalSize, gridCenterY + i* zoomValue,
-                    gridCenterX + intervalSize, gridCenterY + i* zoomValue); //Y
+            int x = viewport.fromCoordsToScreenPos(i, true);
+            int y = viewport.fromCoordsToScreenPos(i, false);
+
+            g.drawLine(x, gridCenterY - intervalSize, x, gridCenterY + intervalSize); //X
+            g.drawLine(gridCenterX - intervalSize, y, gridCenterX + intervalSize, y); //Y
 
-            g.drawString(""+i, gridCenterX + i* zoomValue + numberOffsetX, gridCenterY + numberOffsetY); //X
-            g.drawString(""+-i, gridCenterX + numberOffsetX, gridCenterY + i* zoomValue + numberOffsetY); //Y
+            g.drawString(""+i, x + numberOffsetX, gridCenterY + numberOffsetY); //X
+            g.drawString(""+-i, gridCenterX + numberOffsetX, y + numberOffsetY); //Y
         }
     }
 
@@ -117,8 +387,8 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
      */
     private void drawZPoint(Graphics g) {
         g.setColor(Color.BLUE);
-        g.fillOval(zPosX - dotSize/2, zPosY - dotSize/2, dotSize, dotSize);
-        g.drawString(convertXToCoordsString(), 10, 30);
+        g.fillOval(viewport.getZPosX() - dotSize/2, viewport.getZPosY() - dotSize/2, dotSize, dotSize);
+        g.drawString(viewport.convertXToCoordsString(), 10, 30);
     }
 
     /**
@@ -127,8 +397,8 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
      */
     private void drawCPoint(Graphics g) {
         g.setColor(Color.GREEN);
-        g.fillOval(cPosX - dotSize/2, cPosY - dotSize/2, dotSize, dotSize);
-        g.drawString(convertCToCoordsString(), 10, 60);
+        g.fillOval(viewport.getCPosX() - dotSize/2, viewport.getCPosY() - dotSize/2, dotSize, dotSize);
+        g.drawString(viewport.convertCToCoordsString(), 10, 60);
     }
 
     /**
@@ -137,7 +407,33 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
      */
     private void drawIterationCount(Graphics g) {
         g.setColor(Color.WHITE);
-        g.drawString(iterationsMax + " iterations", SCREEN_WIDTH - 300, 30);
+        g.drawString(viewport.getIterationsMax() + " iterations", SCREEN_WIDTH - 300, 30);
+    }
+
+    /**
+     * Shows how long the last frame took from the input event to the screen, for the preview and the full resolution
+     * @param g -
+     */
+    private void drawFrameLatency(Graphics g) {
+        g.setColor(Color.WHITE);
+        g.drawString(String.format("%.1f / %.1f ms frame latency", renderer.getPreviewLatencyMillis(), renderer.getLastLatencyMillis()), SCREEN_WIDTH - 300, 125);
+    }
+
+    /**
+     * Shows where the time of the last full resolution frame went
+     * @param g -
+     */
+    private void drawRenderStats(Graphics g) {
+        RenderMetrics metrics = renderer.getMetrics();
+        long lookups = metrics.getTileCacheHits() + metrics.getTileCacheMisses();
+
+        g.setColor(Color.WHITE);
+        g.drawString(String.format("plot %.1f ms paint %.1f ms", metrics.getLastPlotMillis(), metrics.getLastPaintMillis()), SCREEN_WIDTH - 300, 150);
+        g.drawString(String.format("%.1f Mpx/s, %d threads", metrics.getPixelsPerSecond() / 1e6, metrics.getThreads()), SCREEN_WIDTH - 300, 175);
+        g.drawString(String.format("%.1f M iterations in %s", metrics.getLastFrameIterations() / 1e6, metrics.getPrecision()), SCREEN_WIDTH - 300, 200);
+        g.drawString(String.format("%.1f%% at the limit", metrics.getInsideFraction() * 100), SCREEN_WIDTH - 300, 225);
+        g.drawString(String.format("cache %d tiles, %.0f%% hits", metrics.getTileCacheSize(),
+                lookups == 0 ? 0 : metrics.getTileCacheHits() * 100.0 / lookups), SCREEN_WIDTH - 300, 250);
     }
 
     /**
@@ -145,13 +441,15 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
      * @param g -
      */
     private void drawSequence(Graphics g) {
+        Rectangle clip = g.getClipBounds();
         g.setColor(Color.ORANGE);
 
-        for (ComplexNumber complex : sequence) {
-            int x = fromCoordsToScreenPos(complex.getReal() ,true);
-            int y = fromCoordsToScreenPos(complex.getImaginary(), false);
+        for (int i = 0; i < orbitPixels; i++) {
+            int x = orbitX[i];
+            int y = orbitY[i];
 
-            g.fillOval(x-dotSize/2, y-dotSize/2, dotSize, dotSize);
+            if(clip == null || clip.intersects(x-dotSize/2, y-dotSize/2, dotSize, dotSize))
+                g.fillOval(x-dotSize/2, y-dotSize/2, dotSize, dotSize);
         }
     }
 
@@ -159,14 +457,13 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
      * Draws the mandelbrot set
      * All dark points  (representing the initial C point for the sequence) on the set result in stable orbits of the sequence
      * @param g -
+     * @param frame - latest frame, null if none is finished yet
      */
-    private void drawMandelbrot(Graphics g) {
-        for(int x = 0; x < pixels.length; x++)
-            for(int y = 0; y < pixels[x].length; y++)
-            {
-                g.setColor(pixels[x][y]);
-                g.drawRect(x, y, 1, 1);
-            }
+    private void drawMandelbrot(Graphics g, AsyncRenderer.Frame frame) {
+        if(frame == null)
+            return;
+
+        g.drawImage(frame.getBuffer().getImage(), 0, 0, null);
     }
 
     //endregion
@@ -177,22 +474,19 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
     public void mouseDragged(MouseEvent e) {
         if (isXSelected)
         {
-            zPosX = e.getX();
-            zPosY = e.getY();
-
-            reCalculateSequence();
-            plotMandelbrot(pixels);
-
-            repaint();
+            updateScreen(viewport.withZ(e.getX(), e.getY()));
         }
         if(isCSelected)
         {
-            cPosX = e.getX();
-            cPosY = e.getY();
+            //the mandelbrot frame does not depend on C, only the overlays moving with it are repainted
+            Rectangle dirty = cOverlayBounds();
 
-            reCalculateSequence();
+            viewport = viewport.withC(e.getX(), e.getY());
+            updateOrbit();
+            julia.show(viewport);
 
-            repaint();
+            dirty.add(cOverlayBounds());
+            repaint(dirty);
         }
     }
 
@@ -208,6 +502,11 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
 
     @Override
     public void mousePressed(MouseEvent e) {
+        int zPosX = viewport.getZPosX();
+        int zPosY = viewport.getZPosY();
+        int cPosX = viewport.getCPosX();
+        int cPosY = viewport.getCPosY();
+
         //did we click the red dot or the green?
         isXSelected =   e.getX() >= zPosX - dotSize/2 &&
                         e.getX() <= zPosX + dotSize/2 &&
@@ -219,12 +518,8 @@ public class Graph extends JPanel implements MouseListener, MouseMotionListener
                         e.getY() >= cPosY - dotSize/2 &&
                         e.getY() <= cPosY + dotSize/2;
 
-        xOffset = e.getX();
-        yOffset = e.getY();
-
         if(!isCSelected && !isXSelected) {
-            focusedPoint = new ComplexNumber(fromScreenPosToCoords(e.getX(), true), -fromScreenPosToCoords(e.getY(), false));
-            shiftScreenToClick(this);
+            updateScreen(viewport.focusedOn(e.getX(), e.getY()));
         }
     }
 
@@ -0,0 +1,108 @@
+package com.gmarshall.mandelbrot;
+
+import com.gmarshall.mandelbrot.render.AsyncRenderer;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.RenderMetrics;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Viewport;
+
+import javax.swing.JPanel;
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * Companion view showing the julia set of the C point
+ * Renders on its own background thread with the shared engine, so dragging C updates this view without touching the mandelbrot frame.
+ * While C is dragged every request replaces the previous one and only the coarse first pass of each reaches the screen,
+ * as soon as C stops the last one is refined to full resolution.
+ */
+public class JuliaPanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int width;
+    private final int height;
+    private final AsyncRenderer renderer;
+    private ViewParams view; //last view requested, only touched by the event thread
+
+    /**
+     * @param engine - engine running the tiles, shared with the mandelbrot view
+     * @param width - view width
+     * @param height - view height
+     */
+    public JuliaPanel(RenderEngine engine, int width, int height) {
+        this.width = width;
+        this.height = height;
+        renderer = new AsyncRenderer(engine, width, height, this::repaint);
+    }
+
+    /**
+     * Requests the julia set of the C point of a viewport, nothing is rendered if C and the iteration limit did not change
+     * @param viewport - view whose C point to show
+     */
+    public void show(Viewport viewport) {
+        ViewParams next = viewport.toJuliaParams(width, height);
+
+        if(next.samePlane(view) && next.getIterationsMax() == view.getIterationsMax())
+            return;
+
+        view = next;
+        renderer.request(next);
+    }
+
+    /**
+     * Renders the last view again from scratch, for when the settings of the engine changed
+     */
+    public void rerender() {
+        if(view != null)
+            renderer.rerender(view);
+    }
+
+    public RenderMetrics getMetrics() {
+        return renderer.getMetrics();
+    }
+
+    /**
+     * @param palette - gradient of the escape times
+     * @param smooth - true to color with the continuous escape time instead of bands
+     */
+    public void setColors(Palette palette, boolean smooth) {
+        renderer.setColors(palette, smooth);
+    }
+
+    /**
+     * @param grid - cells per side of a supersampled edge pixel, 0 for no antialiasing
+     */
+    public void setAntialias(int grid) {
+        renderer.setAntialias(grid);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        PaintEvent event = new PaintEvent();
+        long start = System.nanoTime();
+        event.begin();
+
+        AsyncRenderer.Frame frame = renderer.acquireFrame();
+
+        if(frame == null)
+        {
+            g.setColor(Color.BLACK);
+            g.fillRect(0, 0, width, height);
+        }
+        else
+        {
+            g.drawImage(frame.getBuffer().getImage(), 0, 0, null);
+            renderer.frameDisplayed(frame);
+        }
+
+        g.setColor(Color.GREEN);
+        g.drawRect(0, 0, width - 1, height - 1);
+
+        event.view = "julia";
+        event.commit();
+        renderer.getMetrics().painted(System.nanoTime() - start);
+    }
+}
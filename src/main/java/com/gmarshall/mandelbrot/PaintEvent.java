@@ -0,0 +1,22 @@
+package com.gmarshall.mandelbrot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one paint of a view, frame blit and overlays included
+ */
+@Name("com.gmarshall.mandelbrot.Paint")
+@Label("Paint")
+@Category("Mandelbrot")
+@Description("Time the event thread spent drawing a view")
+@StackTrace(false)
+final class PaintEvent extends Event {
+
+    @Label("View")
+    String view;
+}
@@ -0,0 +1,86 @@
+package com.gmarshall.mandelbrot.animation;
+
+import com.gmarshall.mandelbrot.io.PngStreamWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Destination of the frames of an animation, called with the frames in order from a single thread
+ */
+public interface FrameSink extends AutoCloseable {
+
+    /**
+     * @param frame - frame index
+     * @param pixels - packed RGB pixels of the frame, row by row, only valid during the call
+     * @throws IOException - if the frame cannot be written
+     */
+    void write(int frame, int[] pixels) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * @param directory - directory of the images, created if needed
+     * @param width - frame width
+     * @param height - frame height
+     * @return - sink writing every frame to its own PNG, frame_00000.png and so on
+     * @throws IOException - if the directory cannot be created
+     */
+    static FrameSink pngSequence(Path directory, int width, int height) throws IOException {
+        Files.createDirectories(directory);
+
+        return new FrameSink() {
+            @Override
+            public void write(int frame, int[] pixels) throws IOException {
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(directory.resolve(String.format("frame_%05d.png", frame))), 1 << 16);
+                     PngStreamWriter writer = new PngStreamWriter(out, width, height))
+                {
+                    writer.writeRows(pixels, height);
+                }
+            }
+
+            @Override
+            public void close() {
+                //every image is closed once written
+            }
+        };
+    }
+
+    /**
+     * Raw video, RGB 8 bits per channel row by row and frame after frame, for instance for
+     * ffmpeg -f rawvideo -pix_fmt rgb24 -s WxH -r 30 -i - video.mp4
+     * @param out - stream of the video, closed with the sink
+     * @param width - frame width
+     * @return - sink writing the frames one after the other
+     */
+    static FrameSink rawVideo(OutputStream out, int width) {
+        byte[] row = new byte[width * 3];
+
+        return new FrameSink() {
+            @Override
+            public void write(int frame, int[] pixels) throws IOException {
+                for (int y = 0; y < pixels.length / width; y++)
+                {
+                    for (int x = 0; x < width; x++)
+                    {
+                        int pixel = pixels[y*width + x];
+                        row[x*3] = (byte) (pixel >> 16);
+                        row[x*3 + 1] = (byte) (pixel >> 8);
+                        row[x*3 + 2] = (byte) pixel;
+                    }
+
+                    out.write(row);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+}
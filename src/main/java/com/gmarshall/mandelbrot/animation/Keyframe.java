@@ -0,0 +1,71 @@
+package com.gmarshall.mandelbrot.animation;
+
+/**
+ * Frame of a zoom animation whose view is given, the frames between two keyframes are interpolated, see {@link ZoomPath}
+ */
+public final class Keyframe {
+
+    private final int frame;
+    private final double real;
+    private final double imaginary;
+    private final double zoom;
+    private final int iterations;
+
+    /**
+     * @param frame - index of the frame in the animation
+     * @param real - real part of the point in the middle of the frame
+     * @param imaginary - imaginary part of the point in the middle of the frame
+     * @param zoom - pixels per grid unit
+     * @param iterations - iteration limit
+     */
+    public Keyframe(int frame, double real, double imaginary, double zoom, int iterations) {
+        this.frame = frame;
+        this.real = real;
+        this.imaginary = imaginary;
+        this.zoom = zoom;
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param line - frame re,im zoom iterations, for instance "120 -0.743,0.131 1e5 2000"
+     * @return - keyframe of the line
+     * @throws IllegalArgumentException - if the line does not have the four fields, or one of them is not a number
+     */
+    public static Keyframe parse(String line) {
+        String[] fields = line.trim().split("\\s+");
+        String[] center = fields.length == 4 ? fields[1].split(",") : new String[0];
+
+        if(center.length != 2)
+            throw new IllegalArgumentException("Expected frame re,im zoom iterations, got " + line.trim());
+
+        try
+        {
+            return new Keyframe(Integer.parseInt(fields[0]), Double.parseDouble(center[0]), Double.parseDouble(center[1]),
+                    Double.parseDouble(fields[2]), Integer.parseInt(fields[3]));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Expected frame re,im zoom iterations, got " + line.trim());
+        }
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public double getReal() {
+        return real;
+    }
+
+    public double getImaginary() {
+        return imaginary;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+}
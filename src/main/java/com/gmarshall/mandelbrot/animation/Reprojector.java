@@ -0,0 +1,198 @@
+package com.gmarshall.mandelbrot.animation;
+
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+/*
+ *
+ * A master is rendered SCALE times finer than the frame it starts at and MARGIN times wider, centered on it.
+ * It then serves every following frame it still covers with at least one sample per frame pixel: zooming in by up to
+ * SCALE, zooming out or moving the center by up to the margin. At a zoom of 1% per frame one master serves about 70 frames.
+ *
+ * A frame pixel falls between 4 master samples, their escape times clamped to the iteration limit of the frame.
+ * When all 4 are inside the set so is the pixel. When they all escaped within one band of each other, the pixel takes
+ * the bilinear interpolation of their continuous escape times, which has no step from one band to the next.
+ * Otherwise the pixel is near an edge of the set or in a region of tightly packed bands, and is computed again. Masters are rendered with
+ * the highest iteration limit of the frames they serve, escape times do not depend on the limit once below it.
+ *
+ */
+
+/**
+ * Renders the frames of a zoom path, reprojecting most pixels from a larger render shared by consecutive frames
+ */
+final class Reprojector {
+
+    private static final double SCALE = 2; //master pixels per frame pixel at the first frame of the master
+    private static final double MARGIN = 1.25; //master size over the size of its first frame
+    private static final int MIN_FRAMES = 8; //frames a master must serve to cost less than rendering them from scratch
+
+    private final RenderEngine engine;
+    private final ZoomPath path;
+    private final int width;
+    private final int height;
+    private final IterationField master; //null without reuse
+    private final int[] refine; //pixels of the frame to compute
+    private ViewParams masterView;
+    private int masterEnd = -1; //last frame served by the master
+
+    private long masters;
+    private long reused;
+    private long computed;
+
+    /**
+     * @param engine - engine running the tiles
+     * @param path - frames to render
+     * @param width - frame width
+     * @param height - frame height
+     * @param reuse - false to render every frame from scratch
+     */
+    Reprojector(RenderEngine engine, ZoomPath path, int width, int height, boolean reuse) {
+        this.engine = engine;
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        master = reuse ? new IterationField((int) Math.ceil(width * SCALE * MARGIN), (int) Math.ceil(height * SCALE * MARGIN)) : null;
+        refine = new int[width * height];
+    }
+
+    /**
+     * Renders a frame, frames must be rendered in order for the master to be reused
+     * @param frame - frame index
+     * @param field - field of the frame size to fill
+     */
+    void render(int frame, IterationField field) {
+        ViewParams view = path.view(frame, width, height);
+
+        if(master != null && frame > masterEnd)
+            plan(frame);
+
+        if(master == null || frame > masterEnd) //too few frames to reuse a master
+        {
+            engine.render(view, field, () -> false);
+            computed += (long) width * height;
+            return;
+        }
+
+        int[] counts = field.getCounts();
+        float[] smooth = field.getSmooth();
+        int[] masterCounts = master.getCounts();
+        float[] masterSmooth = master.getSmooth();
+        int stride = master.getWidth();
+        int limit = view.getIterationsMax();
+        double scale = masterView.getZoom() / view.getZoom();
+        double offsetX = masterView.getCenterX() - view.getCenterX() * scale;
+        double offsetY = masterView.getCenterY() - view.getCenterY() * scale;
+        int pixels = 0;
+
+        for (int y = 0; y < height; y++)
+        {
+            double masterY = y * scale + offsetY;
+            int top = (int) masterY;
+            float fy = (float) (masterY - top);
+
+            for (int x = 0; x < width; x++)
+            {
+                double masterX = x * scale + offsetX;
+                int left = (int) masterX;
+                float fx = (float) (masterX - left);
+                int index = top * stride + left;
+                int topLeft = Math.min(masterCounts[index], limit);
+                int topRight = Math.min(masterCounts[index + 1], limit);
+                int bottomLeft = Math.min(masterCounts[index + stride], limit);
+                int bottomRight = Math.min(masterCounts[index + stride + 1], limit);
+                int low = Math.min(Math.min(topLeft, topRight), Math.min(bottomLeft, bottomRight));
+                int high = Math.max(Math.max(topLeft, topRight), Math.max(bottomLeft, bottomRight));
+
+                if(low == limit) //inside the set
+                {
+                    counts[y * width + x] = limit;
+                    smooth[y * width + x] = limit;
+                }
+                else if(high - low <= 1 && high < limit) //the continuous escape time is continuous across one band
+                {
+                    float value = (masterSmooth[index] * (1 - fx) + masterSmooth[index + 1] * fx) * (1 - fy)
+                            + (masterSmooth[index + stride] * (1 - fx) + masterSmooth[index + stride + 1] * fx) * fy;
+
+                    counts[y * width + x] = Math.max(low, Math.min((int) value, high));
+                    smooth[y * width + x] = value;
+                }
+                else
+                {
+                    refine[pixels++] = y * width + x;
+                }
+            }
+        }
+
+        engine.render(view, field, refine, pixels, () -> false, null);
+        computed += pixels;
+        reused += (long) width * height - pixels;
+    }
+
+    /**
+     * @return - masters rendered so far
+     */
+    long getMasters() {
+        return masters;
+    }
+
+    /**
+     * @return - frame pixels taken from a master so far
+     */
+    long getReused() {
+        return reused;
+    }
+
+    /**
+     * @return - frame pixels computed so far, masters left out
+     */
+    long getComputed() {
+        return computed;
+    }
+
+    /**
+     * Renders the master starting at a frame if it serves enough frames
+     */
+    private void plan(int frame) {
+        ViewParams candidate = path.view(frame, master.getWidth(), master.getHeight(), SCALE, path.getIterations(frame));
+        int end = frame;
+        int iterations = path.getIterations(frame);
+
+        while (end + 1 < path.getFrameCount() && covers(candidate, path.view(end + 1, width, height)))
+            iterations = Math.max(iterations, path.getIterations(++end));
+
+        if(end - frame + 1 < MIN_FRAMES)
+            return;
+
+        masterView = path.view(frame, master.getWidth(), master.getHeight(), SCALE, iterations);
+        masterEnd = end;
+        masters++;
+        engine.render(masterView, master, () -> false);
+    }
+
+    /**
+     * @return - true if the master has at least one sample per pixel of the frame and every pixel falls between 4 of them
+     */
+    private boolean covers(ViewParams candidate, ViewParams view) {
+        if(view.getZoom() > candidate.getZoom())
+            return false;
+
+        for (int x : new int[] {0, width - 1})
+        {
+            double masterX = view.real(x) * candidate.getZoom() + candidate.getCenterX();
+
+            if(masterX < 0 || masterX >= candidate.getWidth() - 2) //a pixel of slack for rounding
+                return false;
+        }
+
+        for (int y : new int[] {0, height - 1})
+        {
+            double masterY = view.imaginary(y) * candidate.getZoom() + candidate.getCenterY();
+
+            if(masterY < 0 || masterY >= candidate.getHeight() - 2)
+                return false;
+        }
+
+        return true;
+    }
+}
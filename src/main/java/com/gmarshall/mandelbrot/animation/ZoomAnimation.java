@@ -0,0 +1,230 @@
+package com.gmarshall.mandelbrot.animation;
+
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.util.Options;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders a zoom animation along keyframes, see {@link ZoomPath}
+ * Consecutive frames reuse a larger render instead of starting from scratch, see {@link Reprojector}.
+ * Frames are rendered and colored on this thread, then handed to a writer thread through a bounded queue:
+ * encoding overlaps with the render of the next frames and a fixed set of pixel buffers goes round between them,
+ * so memory stays the same whatever the length of the animation.
+ *
+ * Usage: ZoomAnimation --keyframes file|"frame re,im zoom iterations; ..." --output directory|file|- [options]
+ *   --keyframes         file with one keyframe per line (# for comments), or the keyframes separated by ;
+ *   --format png|raw    one PNG per frame in the output directory, or raw RGB video to the output file, - for stdout (default png)
+ *   --size WxH          frame size (default 1280x720)
+ *   --palette name      rainbow, fire, ocean or grayscale (default rainbow)
+ *   --smooth true|false continuous coloring instead of bands (default true)
+ *   --reuse true|false  reprojects frames from larger renders (default true)
+ *   --queue n           frames waiting for the writer at most (default 4)
+ *
+ * Messages go to the standard error, the standard output may be the video.
+ */
+public final class ZoomAnimation {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        int[] size;
+        ZoomPath path;
+        Palette palette;
+        int queue;
+
+        try
+        {
+            options = Options.parse(args);
+
+            if(!options.containsKey("keyframes") || !options.containsKey("output"))
+            {
+                usage(null);
+                return;
+            }
+
+            size = Options.getSize(options, "size", "1280x720");
+            path = new ZoomPath(keyframes(options.get("keyframes")));
+            palette = Palette.parse(options.getOrDefault("palette", "rainbow"));
+            queue = Options.getInt(options, "queue", "4");
+        }
+        catch (IllegalArgumentException e)
+        {
+            usage(e.getMessage());
+            return;
+        }
+
+        String format = options.getOrDefault("format", "png");
+
+        if(queue < 1)
+            usage("--queue must be at least 1: " + queue);
+        if(!format.equals("png") && !format.equals("raw"))
+            usage("--format must be png or raw: " + format);
+
+        int width = size[0];
+        int height = size[1];
+        boolean smooth = Boolean.parseBoolean(options.getOrDefault("smooth", "true"));
+        boolean reuse = Boolean.parseBoolean(options.getOrDefault("reuse", "true"));
+        String output = options.get("output");
+        RenderEngine engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        FrameSink sink;
+
+        if(format.equals("png"))
+            sink = FrameSink.pngSequence(Path.of(output), width, height);
+        else
+            sink = FrameSink.rawVideo(output.equals("-") ? System.out : new BufferedOutputStream(new FileOutputStream(output), 1 << 16), width);
+
+        try (sink)
+        {
+            Reprojector reprojector = new Reprojector(engine, path, width, height, reuse);
+            long start = System.nanoTime();
+
+            render(engine, path, reprojector, width, height, palette, smooth, queue, sink);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long pixels = reprojector.getReused() + reprojector.getComputed();
+            System.err.printf("%d frames %dx%d in %.2f s, %.2f frames/s%n", path.getFrameCount(), width, height, seconds, path.getFrameCount() / seconds);
+            System.err.printf("%d masters, %.1f%% of the pixels reprojected%n", reprojector.getMasters(), 100.0 * reprojector.getReused() / pixels);
+        }
+        finally
+        {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Renders every frame of the path into the sink
+     * @param engine - engine running the tiles
+     * @param path - frames to render
+     * @param reprojector - renderer of the frames of the path
+     * @param width - frame width
+     * @param height - frame height
+     * @param palette - gradient of the escape times
+     * @param smooth - true to color with the continuous escape time instead of bands
+     * @param queue - frames waiting for the writer at most
+     * @param sink - receives the frames in order, on the writer thread
+     * @throws IOException - if the sink fails
+     * @throws InterruptedException - if the thread is interrupted
+     */
+    static void render(RenderEngine engine, ZoomPath path, Reprojector reprojector, int width, int height, Palette palette, boolean smooth,
+                       int queue, FrameSink sink) throws IOException, InterruptedException {
+        BlockingQueue<int[]> free = new ArrayBlockingQueue<>(queue + 2);
+        BlockingQueue<Frame> ready = new ArrayBlockingQueue<>(queue);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        for (int i = 0; i < queue + 2; i++) //queued, being written and being colored
+            free.add(new int[width * height]);
+
+        Thread writer = new Thread(() -> {
+            try
+            {
+                Frame frame;
+
+                while ((frame = ready.take()).pixels != null)
+                {
+                    try
+                    {
+                        if(failure.get() == null)
+                            sink.write(frame.index, frame.pixels);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        failure.set(e); //keeps taking frames so the render does not wait forever, it stops at the next one
+                    }
+
+                    free.put(frame.pixels);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }, "animation-writer");
+        writer.start();
+
+        IterationField field = new IterationField(width, height);
+        Colorizer colorizer = null;
+
+        try
+        {
+            for (int frame = 0; frame < path.getFrameCount() && failure.get() == null; frame++)
+            {
+                reprojector.render(frame, field);
+
+                if(colorizer == null || colorizer.getIterationsMax() != field.getIterationsMax())
+                    colorizer = new Colorizer(palette, smooth, field.getIterationsMax());
+
+                int[] pixels = free.take();
+                engine.colorize(field, pixels, colorizer);
+                ready.put(new Frame(frame, pixels));
+            }
+        }
+        finally
+        {
+            ready.put(new Frame(-1, null));
+            writer.join();
+        }
+
+        if(failure.get() instanceof IOException)
+            throw (IOException) failure.get();
+        if(failure.get() != null)
+            throw (RuntimeException) failure.get();
+    }
+
+    /**
+     * @param keyframes - file of keyframes, or keyframes separated by ;
+     * @return - keyframes, in the order given
+     */
+    private static List<Keyframe> keyframes(String keyframes) throws IOException {
+        Path file = Path.of(keyframes);
+        List<String> lines = Files.isRegularFile(file) ? Files.readAllLines(file) : List.of(keyframes.split(";"));
+        List<Keyframe> parsed = new ArrayList<>();
+
+        for (String line : lines)
+            if(!line.isBlank() && !line.trim().startsWith("#"))
+                parsed.add(Keyframe.parse(line));
+
+        return parsed;
+    }
+
+    /**
+     * Prints the usage and exits
+     * @param problem - what is wrong with the options, null if one is missing
+     */
+    private static void usage(String problem) {
+        if(problem != null)
+            System.err.println(problem);
+
+        System.err.println("Usage: ZoomAnimation --keyframes file|\"frame re,im zoom iterations; ...\" --output directory|file|- "
+                + "[--format png|raw] [--size WxH] [--palette name] [--smooth true|false] [--reuse true|false] [--queue n]");
+        System.exit(2);
+    }
+
+    /**
+     * Colored frame on its way to the writer, no pixels marks the end
+     */
+    private static final class Frame {
+
+        private final int index;
+        private final int[] pixels;
+
+        private Frame(int index, int[] pixels) {
+            this.index = index;
+            this.pixels = pixels;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.gmarshall.mandelbrot.animation;
+
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Views of every frame of a zoom animation, interpolated between keyframes
+ * The zoom changes by the same factor at every frame, so the zoom speed looks constant. The center moves in step
+ * with the scale rather than with time: a zoom into a point keeps that point still on the screen all along.
+ * The iteration limit goes linearly from one keyframe to the next.
+ */
+public final class ZoomPath {
+
+    private final List<Keyframe> keyframes;
+
+    /**
+     * @param keyframes - keyframes in any order, the first one at frame 0
+     */
+    public ZoomPath(List<Keyframe> keyframes) {
+        this.keyframes = new ArrayList<>(keyframes);
+        this.keyframes.sort(Comparator.comparingInt(Keyframe::getFrame));
+
+        if(this.keyframes.isEmpty() || this.keyframes.get(0).getFrame() != 0)
+            throw new IllegalArgumentException("The first keyframe must be frame 0");
+
+        for (int i = 0; i < this.keyframes.size(); i++)
+        {
+            Keyframe keyframe = this.keyframes.get(i);
+
+            if(i > 0 && keyframe.getFrame() == this.keyframes.get(i - 1).getFrame())
+                throw new IllegalArgumentException("Two keyframes for frame " + keyframe.getFrame());
+            if(!(keyframe.getZoom() > 0) || keyframe.getZoom() >= ViewParams.DEEP_ZOOM)
+                throw new IllegalArgumentException("Zoom of frame " + keyframe.getFrame() + " must be between 0 and " + ViewParams.DEEP_ZOOM);
+            if(keyframe.getIterations() < 1)
+                throw new IllegalArgumentException("Iterations of frame " + keyframe.getFrame() + " must be at least 1");
+        }
+    }
+
+    public int getFrameCount() {
+        return keyframes.get(keyframes.size() - 1).getFrame() + 1;
+    }
+
+    /**
+     * @param frame - frame index
+     * @param width - frame width
+     * @param height - frame height
+     * @return - parameters of the frame
+     */
+    public ViewParams view(int frame, int width, int height) {
+        return view(frame, width, height, 1, getIterations(frame));
+    }
+
+    /**
+     * @param frame - frame index
+     * @param width - image width
+     * @param height - image height
+     * @param scale - pixels of the image per pixel of the frame
+     * @param iterations - iteration limit
+     * @return - parameters of an image centered on the frame, its pixels scale times smaller
+     */
+    ViewParams view(int frame, int width, int height, double scale, int iterations) {
+        int index = segment(frame);
+        Keyframe from = keyframes.get(index);
+        Keyframe to = keyframes.get(Math.min(index + 1, keyframes.size() - 1));
+        double zoom = from.getZoom();
+        double weight = 0;
+
+        if(to != from)
+        {
+            double t = (double) (frame - from.getFrame()) / (to.getFrame() - from.getFrame());
+            zoom = from.getZoom() * Math.pow(to.getZoom() / from.getZoom(), t);
+            weight = from.getZoom() == to.getZoom() ? t : (1 / zoom - 1 / from.getZoom()) / (1 / to.getZoom() - 1 / from.getZoom());
+        }
+
+        return ViewParams.centered(width, height, from.getReal() + (to.getReal() - from.getReal()) * weight,
+                from.getImaginary() + (to.getImaginary() - from.getImaginary()) * weight, zoom * scale, 0, 0, iterations);
+    }
+
+    /**
+     * @param frame - frame index
+     * @return - iteration limit of the frame
+     */
+    public int getIterations(int frame) {
+        int index = segment(frame);
+        Keyframe from = keyframes.get(index);
+
+        if(index == keyframes.size() - 1)
+            return from.getIterations();
+
+        Keyframe to = keyframes.get(index + 1);
+        double t = (double) (frame - from.getFrame()) / (to.getFrame() - from.getFrame());
+
+        return (int) Math.round(from.getIterations() + (to.getIterations() - from.getIterations()) * t);
+    }
+
+    /**
+     * @return - index of the keyframe starting the segment of the frame
+     */
+    private int segment(int frame) {
+        if(frame < 0 || frame >= getFrameCount())
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + getFrameCount());
+
+        int index = 0;
+
+        while (index + 1 < keyframes.size() && keyframes.get(index + 1).getFrame() <= frame)
+            index++;
+
+        return index;
+    }
+}
@@ -0,0 +1,803 @@
+package com.gmarshall.mandelbrot.cluster;
+
+import com.gmarshall.mandelbrot.io.PngStreamWriter;
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.util.Options;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Inflater;
+
+/**
+ * Splits renders in tiles and hands them out to worker processes over TCP, see {@link RenderWorker}
+ *
+ * - Workers pull their tiles: each one keeps a couple of tiles ahead of its results, so fast workers take more of them
+ * - Once every tile is handed out, a worker left without work takes over the oldest tile still computed by another one.
+ *   The first result wins and the other copy is dropped, so one slow worker does not hold the whole job back.
+ * - A worker that disconnects, or stays silent past the timeout with tiles to return, is dropped and its tiles are handed out again
+ * - Workers may connect at any time, even during a job, and stay connected from one job to the next
+ *
+ * The work of every worker is counted in its {@link WorkerStats}.
+ *
+ * Usage: Coordinator --output file.png [--port 7100] [--spawn n] [--workers n] [--tile 64] [--timeout seconds]
+ *                    [--center re,im] [--zoom pixels] [--z0 re,im] [--iterations n] [--size WxH] [--palette name] [--smooth true|false]
+ *
+ * --spawn starts n worker processes on this machine with the same class path, otherwise the render waits for
+ * --workers of them (default 1) to connect. The other options are the ones of {@link com.gmarshall.mandelbrot.BatchRenderer}.
+ * The iteration field of the image is assembled in memory.
+ */
+public final class Coordinator implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 7100;
+    private static final int PIPELINE = 2; //tiles sent ahead of the results, a worker never waits for its next tile
+    private static final int MAX_COPIES = 2; //workers computing the same tile at most
+
+    //tile states
+    private static final byte PENDING = 0;
+    private static final byte SENT = 1;
+    private static final byte CLAIMED = 2; //result received, being stored
+    private static final byte DONE = 3;
+
+    private final ServerSocket server;
+    private final int timeout;
+    private final List<Link> links = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object(); //guards the run and the tiles of every link
+    private Run run; //job in progress, null between jobs
+    private int jobs;
+    private volatile boolean closed;
+
+    /**
+     * Starts accepting workers
+     * @param port - port to listen to, 0 for any free port
+     * @param timeout - milliseconds a worker may stay silent while it has tiles to return, the longest a tile may take
+     * @throws IOException - if the port cannot be bound
+     */
+    public Coordinator(int port, int timeout) throws IOException {
+        this.timeout = timeout;
+        server = new ServerSocket(port);
+
+        Thread acceptor = new Thread(this::accept, "coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return - every worker that ever connected, with its work so far
+     */
+    public List<WorkerStats> getWorkers() {
+        List<WorkerStats> workers = new ArrayList<>();
+
+        for (Link link : links)
+            workers.add(link.stats);
+
+        return workers;
+    }
+
+    /**
+     * Waits for workers to connect
+     * @param count - number of connected workers to wait for
+     * @param millis - longest wait
+     * @return - true if that many workers are connected
+     * @throws InterruptedException - if the thread is interrupted
+     */
+    public boolean awaitWorkers(int count, long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+
+        synchronized (lock) {
+            while (connected() < count)
+            {
+                long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+
+                if(left <= 0)
+                    return false;
+
+                lock.wait(left);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Renders a job on the workers, blocking until every tile is stored
+     * Without any worker connected the tiles wait for one.
+     * @param job - image to render
+     * @param tileSize - side of the tiles handed out
+     * @param sink - receives every tile once, from the connection threads and for several tiles at the same time
+     * @throws IOException - if the sink fails, the job is abandoned
+     * @throws InterruptedException - if the thread is interrupted, the job is abandoned
+     */
+    public void render(Job job, int tileSize, TileSink sink) throws IOException, InterruptedException {
+        if(tileSize < 1)
+            throw new IllegalArgumentException("Tiles must be at least one pixel wide: " + tileSize);
+
+        Run current;
+
+        synchronized (lock) {
+            if(run != null)
+                throw new IllegalStateException("A job is already running");
+
+            current = new Run(++jobs, job, tileSize, sink);
+            run = current;
+            lock.notifyAll();
+
+            try
+            {
+                while (current.remaining > 0 && current.error == null)
+                    lock.wait();
+            }
+            finally
+            {
+                run = null;
+
+                for (Link link : links) //results still on their way are dropped
+                    link.tiles.clear();
+            }
+        }
+
+        if(current.error != null)
+            throw new IOException("Tile could not be stored", current.error);
+    }
+
+    /**
+     * Says goodbye to the workers and stops accepting new ones
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+
+        for (Link link : links)
+            link.bye();
+
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private void accept() {
+        while (!closed)
+        {
+            Socket socket;
+
+            try
+            {
+                socket = server.accept();
+            }
+            catch (IOException e) //closed
+            {
+                return;
+            }
+
+            try
+            {
+                Link link = new Link(socket);
+                links.add(link);
+                link.start();
+
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+            catch (IOException e)
+            {
+                System.err.println("Worker " + socket.getRemoteSocketAddress() + " rejected: " + e.getMessage());
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private int connected() {
+        int connected = 0;
+
+        for (Link link : links)
+            if(link.stats.isConnected())
+                connected++;
+
+        return connected;
+    }
+
+    /**
+     * Picks the next tile of a worker, guarded by the lock
+     * @return - a tile not handed out yet, or when there is none a tile another worker is computing, -1 if there is nothing to do
+     */
+    private int next(Run run, Link link) {
+        if(!run.pending.isEmpty())
+            return run.pending.poll();
+
+        if(!link.tiles.isEmpty()) //only idle workers take over tiles
+            return -1;
+
+        int oldest = -1;
+
+        for (int tile = 0; tile < run.state.length; tile++)
+            if(run.state[tile] == SENT && !run.workers.get(tile).contains(link) && run.workers.get(tile).size() < MAX_COPIES
+                    && (oldest < 0 || run.sentAt[tile] < run.sentAt[oldest]))
+                oldest = tile;
+
+        if(oldest >= 0)
+            link.stats.stolen.increment();
+
+        return oldest;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            //already gone
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options;
+        BigDecimal[] center;
+        BigDecimal[] z0;
+        double zoom;
+        int iterations;
+        int[] size;
+        int spawn;
+        int workers;
+        int tileSize;
+        int port;
+        int timeout;
+        Palette palette;
+
+        try
+        {
+            options = Options.parse(args);
+            center = Options.getComplex(options, "center", "0,0");
+            z0 = Options.getComplex(options, "z0", "0,0");
+            zoom = Options.getDouble(options, "zoom", "100");
+            iterations = Options.getInt(options, "iterations", "100");
+            size = Options.getSize(options, "size", "1600x900");
+            spawn = Options.getInt(options, "spawn", "0");
+            workers = Options.getInt(options, "workers", String.valueOf(Math.max(spawn, 1)));
+            tileSize = Options.getInt(options, "tile", "64");
+            port = Options.getInt(options, "port", String.valueOf(DEFAULT_PORT));
+            timeout = Options.getInt(options, "timeout", "120");
+            palette = Palette.parse(options.getOrDefault("palette", "rainbow"));
+        }
+        catch (IllegalArgumentException e)
+        {
+            usage(e.getMessage());
+            return;
+        }
+
+        if(!options.containsKey("output"))
+            usage(null);
+        if(!(zoom > 0))
+            usage("--zoom must be positive: " + zoom);
+        if(iterations < 1)
+            usage("--iterations must be at least 1: " + iterations);
+        if(spawn < 0)
+            usage("--spawn must be 0 or more: " + spawn);
+        if(workers < 1)
+            usage("--workers must be at least 1: " + workers);
+        if(tileSize < 1)
+            usage("--tile must be at least 1 pixel: " + tileSize);
+        if(port < 0 || port > 65535)
+            usage("--port must be between 0 and 65535: " + port);
+        if(timeout < 1 || timeout > Integer.MAX_VALUE / 1000)
+            usage("--timeout must be a positive number of seconds: " + timeout);
+
+        Job job = new Job(size[0], size[1], center[0].toString(), center[1].toString(), zoom, z0[0].doubleValue(), z0[1].doubleValue(), iterations);
+        Colorizer colorizer = new Colorizer(palette, Boolean.parseBoolean(options.getOrDefault("smooth", "false")), iterations);
+
+        int width = job.getWidth();
+        int[] counts = new int[width * job.getHeight()];
+        float[] smooth = new float[counts.length];
+        List<Process> processes = new ArrayList<>();
+
+        try (Coordinator coordinator = new Coordinator(port, timeout * 1000))
+        {
+            for (int i = 0; i < spawn; i++)
+                processes.add(spawn(coordinator.getPort(), Math.max(1, Runtime.getRuntime().availableProcessors() / spawn), "local-" + (i + 1)));
+
+            System.out.printf("Waiting for %d workers on port %d%n", workers, coordinator.getPort());
+            while (!coordinator.awaitWorkers(workers, 10_000))
+                System.out.printf("%d of %d workers connected%n", coordinator.connected(), workers);
+
+            long start = System.nanoTime();
+
+            coordinator.render(job, tileSize, (x, y, tileWidth, tileHeight, tileCounts, tileSmooth) -> {
+                for (int row = 0; row < tileHeight; row++)
+                {
+                    System.arraycopy(tileCounts, row * tileWidth, counts, (y + row) * width + x, tileWidth);
+                    System.arraycopy(tileSmooth, row * tileWidth, smooth, (y + row) * width + x, tileWidth);
+                }
+            });
+
+            long elapsed = System.nanoTime() - start;
+            write(Path.of(options.get("output")), job, counts, smooth, colorizer);
+
+            System.out.printf("%dx%d, %d iterations in %.2f s on %d workers%n", width, job.getHeight(), iterations, elapsed / 1e9,
+                    coordinator.connected());
+            for (WorkerStats worker : coordinator.getWorkers())
+                System.out.println(worker.report(elapsed));
+        }
+        finally
+        {
+            for (Process process : processes)
+                if(!process.waitFor(5, TimeUnit.SECONDS))
+                    process.destroy();
+        }
+    }
+
+    /**
+     * Starts a worker process on this machine, with the class path and the vector module of this one
+     */
+    private static Process spawn(int port, int threads, String name) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+
+        if(RenderEngine.VECTOR_AVAILABLE)
+            command.add("--add-modules=jdk.incubator.vector");
+
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), RenderWorker.class.getName(),
+                "--port", String.valueOf(port), "--threads", String.valueOf(threads), "--name", name));
+
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private static void write(Path output, Job job, int[] counts, float[] smooth, Colorizer colorizer) throws IOException {
+        int width = job.getWidth();
+        int[] pixels = new int[width * Math.min(256, job.getHeight())];
+
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output.toFile()), 1 << 16);
+             PngStreamWriter writer = new PngStreamWriter(out, width, job.getHeight()))
+        {
+            for (int y = 0; y < job.getHeight(); y += 256)
+            {
+                int rows = Math.min(256, job.getHeight() - y);
+
+                for (int i = 0; i < rows * width; i++)
+                    pixels[i] = colorizer.color(counts[y*width + i], smooth[y*width + i]);
+
+                writer.writeRows(pixels, rows);
+            }
+        }
+    }
+
+    /**
+     * Prints the usage and exits
+     * @param problem - what is wrong with the options, null if one is missing
+     */
+    private static void usage(String problem) {
+        if(problem != null)
+            System.err.println(problem);
+
+        System.err.println("Usage: Coordinator --output file.png [--port 7100] [--spawn n] [--workers n] [--tile 64] [--timeout seconds] "
+                + "[--center re,im] [--zoom pixels] [--z0 re,im] [--iterations n] [--size WxH] [--palette name] [--smooth true|false]");
+        System.exit(2);
+    }
+
+    /**
+     * Destination of the rendered tiles
+     */
+    @FunctionalInterface
+    public interface TileSink {
+
+        /**
+         * @param x - first column of the tile in the image
+         * @param y - first row of the tile in the image
+         * @param width - tile width, smaller on the right edge of the image
+         * @param height - tile height, smaller on the bottom edge of the image
+         * @param counts - escape times of the tile, row by row, only valid during the call
+         * @param smooth - continuous escape times of the tile, only valid during the call
+         * @throws IOException - if the tile cannot be stored
+         */
+        void accept(int x, int y, int width, int height, int[] counts, float[] smooth) throws IOException;
+    }
+
+    /**
+     * Work of one worker since it connected
+     */
+    public static final class WorkerStats {
+
+        private final String name;
+        private final int threads;
+        private final LongAdder tiles = new LongAdder(); //results stored
+        private final LongAdder pixels = new LongAdder();
+        private final LongAdder iterations = new LongAdder();
+        private final LongAdder computeNanos = new LongAdder(); //time spent rendering, measured by the worker, dropped copies included
+        private final LongAdder duplicates = new LongAdder(); //results dropped because another worker was first
+        private final LongAdder stolen = new LongAdder(); //tiles taken over from another worker
+        private volatile boolean connected = true;
+
+        private WorkerStats(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getTiles() {
+            return tiles.sum();
+        }
+
+        public long getPixels() {
+            return pixels.sum();
+        }
+
+        public long getIterations() {
+            return iterations.sum();
+        }
+
+        public long getComputeNanos() {
+            return computeNanos.sum();
+        }
+
+        public long getDuplicates() {
+            return duplicates.sum();
+        }
+
+        public long getStolen() {
+            return stolen.sum();
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        /**
+         * @param elapsed - wall time of the job, in nanoseconds
+         * @return - one line with the share of the job and the throughput of the worker
+         */
+        public String report(long elapsed) {
+            double compute = Math.max(getComputeNanos(), 1) / 1e9;
+
+            return String.format("%-16s %2d threads %5d tiles %7.2f Mpixels/s %8.1f Miterations/s busy %3.0f%% stolen %d dropped %d%s",
+                    name, threads, getTiles(), getPixels() / compute / 1e6, getIterations() / compute / 1e6,
+                    100.0 * getComputeNanos() / Math.max(elapsed, 1), getStolen(), getDuplicates(), connected ? "" : " disconnected");
+        }
+    }
+
+    /**
+     * Tiles of the job in progress, guarded by the lock
+     */
+    private static final class Run {
+
+        private final int id;
+        private final Job job;
+        private final int tileSize;
+        private final int tilesX;
+        private final TileSink sink;
+        private final byte[] state;
+        private final long[] sentAt; //first time a tile was sent
+        private final List<Set<Link>> workers = new ArrayList<>(); //workers computing each tile
+        private final ArrayDeque<Integer> pending = new ArrayDeque<>(); //tiles not handed out, or given back by a lost worker
+        private int remaining;
+        private Exception error;
+
+        private Run(int id, Job job, int tileSize, TileSink sink) {
+            this.id = id;
+            this.job = job;
+            this.tileSize = tileSize;
+            this.sink = sink;
+            tilesX = (job.getWidth() + tileSize - 1) / tileSize;
+            remaining = tilesX * ((job.getHeight() + tileSize - 1) / tileSize);
+            state = new byte[remaining];
+            sentAt = new long[remaining];
+
+            for (int tile = 0; tile < remaining; tile++)
+            {
+                workers.add(new HashSet<>());
+                pending.add(tile);
+            }
+        }
+
+        int x(int tile) {
+            return tile % tilesX * tileSize;
+        }
+
+        int y(int tile) {
+            return tile / tilesX * tileSize;
+        }
+
+        int width(int tile) {
+            return Math.min(tileSize, job.getWidth() - x(tile));
+        }
+
+        int height(int tile) {
+            return Math.min(tileSize, job.getHeight() - y(tile));
+        }
+    }
+
+    /**
+     * Connection to one worker, with a thread sending its tiles and one receiving its results
+     */
+    private final class Link {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final WorkerStats stats;
+        private final Semaphore window = new Semaphore(PIPELINE); //tiles that may be sent before their results come back
+        private final Set<Integer> tiles = new HashSet<>(); //tiles of the run this worker owes, guarded by the lock
+        private int jobSent = -1; //only touched by the sending thread
+
+        Link(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(timeout);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            if(in.readInt() != Protocol.MAGIC || in.readInt() != Protocol.VERSION)
+                throw new IOException("Not a worker of this version");
+
+            int threads = in.readInt();
+            stats = new WorkerStats(in.readUTF(), threads);
+        }
+
+        void start() {
+            Thread sender = new Thread(this::send, "coordinator-send-" + stats.name);
+            Thread receiver = new Thread(this::receive, "coordinator-receive-" + stats.name);
+            sender.setDaemon(true);
+            receiver.setDaemon(true);
+            sender.start();
+            receiver.start();
+        }
+
+        private void send() {
+            try
+            {
+                while (true)
+                {
+                    window.acquire();
+                    Run current;
+                    int tile;
+
+                    synchronized (lock) {
+                        while (true)
+                        {
+                            if(!stats.connected || closed)
+                                return;
+
+                            current = run;
+
+                            if(current != null && (tile = next(current, this)) >= 0)
+                                break;
+
+                            lock.wait();
+                        }
+
+                        tiles.add(tile);
+                        current.workers.get(tile).add(this);
+
+                        if(current.state[tile] == PENDING)
+                        {
+                            current.state[tile] = SENT;
+                            current.sentAt[tile] = System.nanoTime();
+                        }
+                    }
+
+                    synchronized (out) {
+                        if(jobSent != current.id)
+                        {
+                            out.writeByte(Protocol.JOB);
+                            out.writeInt(current.id);
+                            current.job.write(out);
+                            jobSent = current.id;
+                        }
+
+                        out.writeByte(Protocol.TILE);
+                        out.writeInt(current.id);
+                        out.writeInt(tile);
+                        out.writeInt(current.x(tile));
+                        out.writeInt(current.y(tile));
+                        out.writeInt(current.width(tile));
+                        out.writeInt(current.height(tile));
+                        out.flush();
+                    }
+                }
+            }
+            catch (IOException | InterruptedException e)
+            {
+                fail(e);
+            }
+        }
+
+        private void receive() {
+            Inflater inflater = new Inflater();
+            int[] counts = new int[0];
+            float[] smooth = new float[0];
+
+            try
+            {
+                while (true)
+                {
+                    byte type;
+
+                    try
+                    {
+                        type = in.readByte();
+                    }
+                    catch (SocketTimeoutException e)
+                    {
+                        synchronized (lock) {
+                            if(!tiles.isEmpty())
+                                throw new IOException("No result for " + timeout + " ms");
+                        }
+
+                        continue; //idle between jobs
+                    }
+
+                    if(type != Protocol.RESULT)
+                        throw new IOException("Unknown message " + type);
+
+                    int jobId = in.readInt();
+                    int tile = in.readInt();
+                    long nanos = in.readLong();
+                    long iterations = in.readLong();
+                    byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    window.release();
+                    stats.computeNanos.add(nanos);
+
+                    Run current;
+
+                    synchronized (lock) {
+                        current = run;
+
+                        if(current == null || current.id != jobId || !tiles.remove(tile)) //job over, or tile of another job
+                        {
+                            stats.duplicates.increment();
+                            continue;
+                        }
+
+                        current.workers.get(tile).remove(this);
+                        lock.notifyAll(); //idle now, it may take over a tile
+                    }
+
+                    int size = current.width(tile) * current.height(tile);
+
+                    if(counts.length != size)
+                    {
+                        counts = new int[size];
+                        smooth = new float[size];
+                    }
+
+                    Protocol.decode(data, counts, smooth, inflater);
+
+                    synchronized (lock) {
+                        if(current.state[tile] != SENT) //another worker was first
+                        {
+                            stats.duplicates.increment();
+                            continue;
+                        }
+
+                        current.state[tile] = CLAIMED;
+                    }
+
+                    try
+                    {
+                        current.sink.accept(current.x(tile), current.y(tile), current.width(tile), current.height(tile), counts, smooth);
+                    }
+                    catch (IOException | RuntimeException e)
+                    {
+                        synchronized (lock) {
+                            current.error = e;
+                            lock.notifyAll();
+                        }
+
+                        continue;
+                    }
+
+                    stats.tiles.increment();
+                    stats.pixels.add(size);
+                    stats.iterations.add(iterations);
+
+                    synchronized (lock) {
+                        current.state[tile] = DONE;
+                        current.remaining--;
+                        lock.notifyAll();
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                fail(e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+
+        /**
+         * Drops the worker and hands its tiles out again
+         */
+        private void fail(Exception cause) {
+            synchronized (lock) {
+                if(!stats.connected)
+                    return;
+
+                stats.connected = false;
+
+                if(run != null)
+                {
+                    for (int tile : tiles)
+                    {
+                        run.workers.get(tile).remove(this);
+
+                        if(run.state[tile] == SENT && run.workers.get(tile).isEmpty())
+                        {
+                            run.state[tile] = PENDING;
+                            run.pending.addFirst(tile);
+                        }
+                    }
+                }
+
+                tiles.clear();
+                lock.notifyAll();
+            }
+
+            if(!closed)
+                System.err.println("Worker " + stats.name + " lost: " + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName()));
+
+            window.release(PIPELINE); //the sending thread may be waiting for results that will never come
+            closeQuietly(socket);
+        }
+
+        /**
+         * Tells the worker to exit, then closes the connection
+         */
+        void bye() {
+            if(stats.connected)
+            {
+                try
+                {
+                    synchronized (out) {
+                        out.writeByte(Protocol.BYE);
+                        out.flush();
+                    }
+                }
+                catch (IOException e)
+                {
+                    //gone already
+                }
+            }
+
+            fail(new IOException("Closed"));
+        }
+    }
+}
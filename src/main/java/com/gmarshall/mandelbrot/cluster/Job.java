@@ -0,0 +1,82 @@
+package com.gmarshall.mandelbrot.cluster;
+
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Image rendered by the workers, described by the same parameters as {@link com.gmarshall.mandelbrot.BatchRenderer}
+ * The center is kept as text so deep zooms keep all their digits, every worker computes the reference orbit itself.
+ */
+public final class Job {
+
+    private final int width;
+    private final int height;
+    private final String centerReal;
+    private final String centerImaginary;
+    private final double zoom;
+    private final double zReal;
+    private final double zImaginary;
+    private final int iterations;
+
+    /**
+     * @param width - image width
+     * @param height - image height
+     * @param centerReal - real part of the center, any number of digits
+     * @param centerImaginary - imaginary part of the center, any number of digits
+     * @param zoom - pixels per grid unit
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param iterations - iteration limit
+     */
+    public Job(int width, int height, String centerReal, String centerImaginary, double zoom, double zReal, double zImaginary, int iterations) {
+        this.width = width;
+        this.height = height;
+        this.centerReal = centerReal;
+        this.centerImaginary = centerImaginary;
+        this.zoom = zoom;
+        this.zReal = zReal;
+        this.zImaginary = zImaginary;
+        this.iterations = iterations;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return - parameters of the whole image, rendered by perturbation past {@link ViewParams#DEEP_ZOOM}
+     */
+    public ViewParams toView() {
+        BigDecimal real = new BigDecimal(centerReal);
+        BigDecimal imaginary = new BigDecimal(centerImaginary);
+
+        return ViewParams.centered(width, height, real, imaginary, zoom, zReal, zImaginary, iterations);
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeUTF(centerReal);
+        out.writeUTF(centerImaginary);
+        out.writeDouble(zoom);
+        out.writeDouble(zReal);
+        out.writeDouble(zImaginary);
+        out.writeInt(iterations);
+    }
+
+    static Job read(DataInput in) throws IOException {
+        return new Job(in.readInt(), in.readInt(), in.readUTF(), in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble(), in.readInt());
+    }
+}
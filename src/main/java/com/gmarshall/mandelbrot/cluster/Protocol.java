@@ -0,0 +1,112 @@
+package com.gmarshall.mandelbrot.cluster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ *
+ * Messages between the coordinator and its workers, over one TCP connection per worker, big endian:
+ *
+ * worker -> coordinator   HELLO   magic, version, threads, name
+ * coordinator -> worker   JOB     job id, job (see Job#write), sent once before the first tile of a job
+ * coordinator -> worker   TILE    job id, tile id, x, y, width, height
+ * worker -> coordinator   RESULT  job id, tile id, nanoseconds, iterations, length, deflated tile
+ * coordinator -> worker   BYE     the worker exits
+ *
+ * A deflated tile holds the escape times (int) then the continuous escape times (float) of the tile, little endian
+ * like the field store. Tiles inside the set or far outside it are mostly the same value and shrink to almost nothing.
+ *
+ */
+
+/**
+ * Message constants and the tile encoding shared by the coordinator and the workers
+ */
+final class Protocol {
+
+    static final int MAGIC = 0x4D414E44; //"MAND"
+    static final int VERSION = 1;
+
+    static final byte JOB = 'J';
+    static final byte TILE = 'T';
+    static final byte RESULT = 'R';
+    static final byte BYE = 'B';
+
+    private Protocol() {
+    }
+
+    /**
+     * @param counts - escape times of the tile
+     * @param smooth - continuous escape times of the tile
+     * @param deflater - deflater of the calling thread, reset before use
+     * @return - deflated tile
+     */
+    static byte[] encode(int[] counts, float[] smooth, Deflater deflater) {
+        ByteBuffer raw = ByteBuffer.allocate(counts.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        raw.asIntBuffer().put(counts);
+        raw.position(counts.length * 4);
+        raw.asFloatBuffer().put(smooth);
+
+        deflater.reset();
+        deflater.setInput(raw.array());
+        deflater.finish();
+
+        byte[] out = new byte[64 + raw.capacity() / 8];
+        int length = 0;
+
+        while (!deflater.finished())
+        {
+            if(length == out.length)
+                out = Arrays.copyOf(out, out.length * 2);
+
+            length += deflater.deflate(out, length, out.length - length);
+        }
+
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * @param data - deflated tile
+     * @param counts - filled with the escape times, of the tile size
+     * @param smooth - filled with the continuous escape times, of the tile size
+     * @param inflater - inflater of the calling thread, reset before use
+     * @throws IOException - if the data is not a tile of that size
+     */
+    static void decode(byte[] data, int[] counts, float[] smooth, Inflater inflater) throws IOException {
+        byte[] raw = new byte[counts.length * 8];
+
+        inflater.reset();
+        inflater.setInput(data);
+
+        try
+        {
+            int length = 0;
+
+            while (length < raw.length && !inflater.finished())
+            {
+                int inflated = inflater.inflate(raw, length, raw.length - length);
+
+                if(inflated == 0 && inflater.needsInput())
+                    break;
+
+                length += inflated;
+            }
+
+            if(length != raw.length || !inflater.finished())
+                throw new IOException("Tile of " + length + " bytes, expected " + raw.length);
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Corrupted tile", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().get(counts);
+        buffer.position(counts.length * 4);
+        buffer.asFloatBuffer().get(smooth);
+    }
+}
@@ -0,0 +1,148 @@
+package com.gmarshall.mandelbrot.cluster;
+
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Options;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Worker process of a distributed render, see {@link Coordinator}
+ * Connects to the coordinator and renders the tiles it sends one after the other with all its threads,
+ * until the coordinator says goodbye or goes away.
+ *
+ * Usage: RenderWorker [--host localhost] [--port 7100] [--threads cores] [--name host-pid]
+ */
+public final class RenderWorker {
+
+    private final RenderEngine engine;
+    private final String name;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private IterationField field; //last tile, reused while the tile size stays the same
+
+    /**
+     * @param engine - engine rendering the tiles
+     * @param name - name of the worker in the coordinator report
+     */
+    public RenderWorker(RenderEngine engine, String name) {
+        this.engine = engine;
+        this.name = name;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options = Options.parse(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        String name = options.getOrDefault("name", ManagementFactory.getRuntimeMXBean().getName()); //pid@host
+        RenderEngine engine = new RenderEngine(threads);
+
+        try
+        {
+            new RenderWorker(engine, name).serve(options.getOrDefault("host", "localhost"),
+                    Integer.parseInt(options.getOrDefault("port", String.valueOf(Coordinator.DEFAULT_PORT))));
+        }
+        finally
+        {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * Renders the tiles of a coordinator until it is done with this worker
+     * @param host - coordinator host
+     * @param port - coordinator port
+     * @throws IOException - if the connection fails before the coordinator says goodbye
+     */
+    public void serve(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port))
+        {
+            socket.setTcpNoDelay(true); //results are flushed whole, no need to wait for more
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            int jobId = -1;
+            ViewParams view = null;
+
+            out.writeInt(Protocol.MAGIC);
+            out.writeInt(Protocol.VERSION);
+            out.writeInt(engine.getThreads());
+            out.writeUTF(name);
+            out.flush();
+
+            while (true)
+            {
+                byte type;
+
+                try
+                {
+                    type = in.readByte();
+                }
+                catch (EOFException e) //coordinator closed without a goodbye
+                {
+                    return;
+                }
+
+                if(type == Protocol.BYE)
+                {
+                    return;
+                }
+                else if(type == Protocol.JOB)
+                {
+                    jobId = in.readInt();
+                    view = Job.read(in).toView(); //deep zooms compute their reference orbit here, once per job
+                }
+                else if(type == Protocol.TILE)
+                {
+                    int tileJob = in.readInt();
+                    int tileId = in.readInt();
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    int width = in.readInt();
+                    int height = in.readInt();
+
+                    if(tileJob != jobId)
+                        throw new IOException("Tile of job " + tileJob + " received during job " + jobId);
+
+                    long iterations = engine.getIterations();
+                    long start = System.nanoTime();
+                    byte[] data = render(view.region(x, y, width, height));
+
+                    out.writeByte(Protocol.RESULT);
+                    out.writeInt(jobId);
+                    out.writeInt(tileId);
+                    out.writeLong(System.nanoTime() - start);
+                    out.writeLong(engine.getIterations() - iterations);
+                    out.writeInt(data.length);
+                    out.write(data);
+                    out.flush();
+                }
+                else
+                {
+                    throw new IOException("Unknown message " + type);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return - deflated field of the tile
+     */
+    private byte[] render(ViewParams tile) {
+        if(field == null || field.getWidth() != tile.getWidth() || field.getHeight() != tile.getHeight())
+            field = new IterationField(tile.getWidth(), tile.getHeight());
+
+        engine.render(tile, field, () -> false);
+
+        return Protocol.encode(field.getCounts(), field.getSmooth(), deflater);
+    }
+}
@@ -0,0 +1,268 @@
+package com.gmarshall.mandelbrot.io;
+
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+
+/*
+ *
+ * File layout, little endian:
+ *
+ * - header, one page: magic, version, image and tile size, the view parameters and the job description
+ * - tile index, one byte per tile, DONE once the tile is on disk, padded to a page
+ * - tiles, row by row, each one TILE_SIZE² escape times (int) followed by TILE_SIZE² continuous escape times (float).
+ *   Tiles on the right and bottom edges are stored whole, the part outside the image is never read.
+ *
+ * A tile is forced to the disk before its index entry is set and forced too, so after a crash every tile marked DONE
+ * is complete and the others are simply rendered again. The file is created sparse: tiles cost disk space once written.
+ *
+ */
+
+/**
+ * Iteration field of a whole image kept in a memory mapped file, for images far larger than the heap
+ * The field is rendered tile by tile and each finished tile is recorded in an index, so a job that was stopped
+ * resumes with the tiles still missing. Export colors the image straight from the mapped tiles, strip by strip.
+ */
+public final class FieldStore implements AutoCloseable {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final long MAGIC = 0x31444C46444E414DL; //"MANDFLD1"
+    private static final int VERSION = 1;
+    private static final int PAGE = 4096;
+    private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * 8;
+    private static final long CHUNK_BYTES = 1L << 30; //a mapping holds at most 2 GB, tiles are mapped in chunks of 1 GB
+    private static final byte DONE = 1;
+
+    private final FileChannel channel;
+    private final ViewParams view;
+    private final int tilesX;
+    private final int tilesY;
+    private final long dataOffset;
+    private final int tilesPerChunk;
+    private final MappedByteBuffer index;
+    private final MappedByteBuffer[] chunks;
+
+    private FieldStore(FileChannel channel, ViewParams view, boolean created, String job) throws IOException {
+        this.channel = channel;
+        this.view = view;
+        tilesX = (view.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        tilesY = (view.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        dataOffset = PAGE + ((long) tilesX * tilesY + PAGE - 1) / PAGE * PAGE;
+        tilesPerChunk = (int) (CHUNK_BYTES / TILE_BYTES);
+
+        int tiles = tilesX * tilesY;
+        long size = dataOffset + tiles * TILE_BYTES;
+
+        if(created)
+        {
+            channel.write(header(view, job), 0);
+            channel.write(ByteBuffer.wrap(new byte[] {0}), size - 1); //sets the length without writing the tiles
+        }
+        else if(channel.size() != size || !header(view, job).equals(readHeader(channel)))
+        {
+            throw new IOException("The store belongs to another render, delete it to start over");
+        }
+
+        index = channel.map(FileChannel.MapMode.READ_WRITE, PAGE, tiles);
+        chunks = new MappedByteBuffer[(tiles + tilesPerChunk - 1) / tilesPerChunk];
+
+        for (int c = 0; c < chunks.length; c++)
+        {
+            long first = (long) c * tilesPerChunk;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, dataOffset + first * TILE_BYTES, Math.min(tilesPerChunk, tiles - first) * TILE_BYTES);
+            chunks[c].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Opens the store of a render, creating it if the file does not exist yet
+     * @param path - file of the store
+     * @param view - whole image
+     * @param job - description of the render, an existing store is only resumed if it was created with the same one
+     * @return - store, with the tiles already rendered by a previous run
+     * @throws IOException - if the file cannot be mapped or belongs to another render
+     */
+    public static FieldStore open(Path path, ViewParams view, String job) throws IOException {
+        boolean created = !Files.exists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            return new FieldStore(channel, view, created, job);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getTileCount() {
+        return tilesX * tilesY;
+    }
+
+    /**
+     * @return - number of tiles already on disk
+     */
+    public int getCompletedTiles() {
+        int completed = 0;
+
+        for (int tile = 0; tile < getTileCount(); tile++)
+            if(index.get(tile) == DONE)
+                completed++;
+
+        return completed;
+    }
+
+    /**
+     * Renders every tile still missing, each one is on disk before the next one starts
+     * Tiles are rendered one at a time with all the workers of the engine, a tile holds 64 tiles of the engine.
+     * @param engine - engine running the tiles
+     * @return - number of tiles rendered
+     * @throws IOException - if a tile cannot be written
+     */
+    public int render(RenderEngine engine) throws IOException {
+        return render(engine, () -> false);
+    }
+
+    /**
+     * Renders the tiles still missing until the render is no longer wanted, the tiles finished by then stay on disk
+     * @param engine - engine running the tiles
+     * @param cancelled - true once the render must stop, checked before every tile
+     * @return - number of tiles rendered
+     * @throws IOException - if a tile cannot be written
+     */
+    public int render(RenderEngine engine, BooleanSupplier cancelled) throws IOException {
+        IterationField field = new IterationField(TILE_SIZE, TILE_SIZE);
+        int rendered = 0;
+
+        for (int tile = 0; tile < getTileCount() && !cancelled.getAsBoolean(); tile++)
+        {
+            if(index.get(tile) == DONE)
+                continue;
+
+            //edge tiles are rendered whole too, the part outside the image is never read
+            if(!engine.render(view.region(tile % tilesX * TILE_SIZE, tile / tilesX * TILE_SIZE, TILE_SIZE, TILE_SIZE), field, cancelled))
+                break;
+
+            MappedByteBuffer chunk = chunks[tile / tilesPerChunk];
+            int offset = (int) (tile % tilesPerChunk * TILE_BYTES);
+
+            counts(tile).put(field.getCounts());
+            smooth(tile).put(field.getSmooth());
+            chunk.force(offset, (int) TILE_BYTES);
+
+            index.put(tile, DONE);
+            index.force(tile, 1);
+            rendered++;
+        }
+
+        return rendered;
+    }
+
+    /**
+     * Colors the image strip by strip, reading the escape times straight from the mapped tiles
+     * @param colorizer - colors of the image
+     * @param sink - receives each strip of TILE_SIZE rows in order, from the top
+     * @throws IOException - if the sink fails
+     */
+    public void export(Colorizer colorizer, StripSink sink) throws IOException {
+        if(getCompletedTiles() != getTileCount())
+            throw new IllegalStateException("Only " + getCompletedTiles() + " of " + getTileCount() + " tiles are rendered");
+
+        Colorizer colors = colorizer.forLimit(view.getIterationsMax());
+        int width = view.getWidth();
+        int[] pixels = new int[width * TILE_SIZE];
+
+        for (int tileY = 0; tileY < tilesY; tileY++)
+        {
+            int rows = Math.min(TILE_SIZE, view.getHeight() - tileY * TILE_SIZE);
+
+            for (int tileX = 0; tileX < tilesX; tileX++)
+            {
+                int tile = tileY * tilesX + tileX;
+                int columns = Math.min(TILE_SIZE, width - tileX * TILE_SIZE);
+                IntBuffer counts = counts(tile);
+                FloatBuffer smooth = smooth(tile);
+
+                for (int y = 0; y < rows; y++)
+                {
+                    int target = y*width + tileX * TILE_SIZE;
+
+                    for (int x = 0; x < columns; x++)
+                        pixels[target + x] = colors.color(counts.get(y*TILE_SIZE + x), smooth.get(y*TILE_SIZE + x));
+                }
+            }
+
+            sink.accept(pixels, rows);
+        }
+    }
+
+    /**
+     * Unmapping is left to the garbage collector, the buffers must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return - escape times of a tile, a view of the mapping
+     */
+    private IntBuffer counts(int tile) {
+        int offset = (int) (tile % tilesPerChunk * TILE_BYTES);
+        return chunks[tile / tilesPerChunk].slice(offset, (int) (TILE_BYTES / 2)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * @return - continuous escape times of a tile, a view of the mapping
+     */
+    private FloatBuffer smooth(int tile) {
+        int offset = (int) (tile % tilesPerChunk * TILE_BYTES + TILE_BYTES / 2);
+        return chunks[tile / tilesPerChunk].slice(offset, (int) (TILE_BYTES / 2)).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * @return - header of a store of the view, one page
+     */
+    private static ByteBuffer header(ViewParams view, String job) {
+        byte[] description = job.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(PAGE).order(ByteOrder.LITTLE_ENDIAN);
+
+        if(description.length > PAGE - 128)
+            throw new IllegalArgumentException("Job description too long: " + description.length + " bytes");
+
+        header.putLong(MAGIC).putInt(VERSION);
+        header.putInt(view.getWidth()).putInt(view.getHeight()).putInt(TILE_SIZE).putInt(view.getIterationsMax());
+        header.putDouble(view.getCenterX()).putDouble(view.getCenterY()).putDouble(view.getZoom());
+        header.putDouble(view.getZReal()).putDouble(view.getZImaginary());
+        header.put((byte) (view.isJulia() ? 1 : 0)).putDouble(view.getCReal()).putDouble(view.getCImaginary());
+        header.put((byte) (view.getReference() != null ? 1 : 0));
+        header.putInt(description.length).put(description);
+
+        return header.clear();
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(PAGE).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0);
+
+        return header.clear();
+    }
+}
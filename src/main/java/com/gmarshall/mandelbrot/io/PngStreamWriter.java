@@ -0,0 +1,164 @@
+package com.gmarshall.mandelbrot.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an RGB PNG row by row, so an image never has to be held in memory as a whole
+ * Rows go through the "sub" filter and a single deflate stream split in IDAT chunks as the buffer fills up
+ */
+public final class PngStreamWriter implements AutoCloseable {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final byte FILTER_SUB = 1;
+
+    private final DataOutputStream out;
+    private final int width;
+    private final int height;
+    private final DeflaterOutputStream deflater;
+    private final Deflater compressor = new Deflater(6);
+    private final byte[] row; //filter byte then R, G, B of each pixel
+    private int rowsWritten;
+
+    /**
+     * Writes the PNG header
+     * @param out - destination, closed with the writer
+     * @param width - image width
+     * @param height - image height, exactly this many rows must be written
+     * @throws IOException - if the header cannot be written
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.width = width;
+        this.height = height;
+        row = new byte[1 + width * 3];
+
+        this.out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8); //bits per channel
+        data.writeByte(2); //truecolor RGB
+        data.writeByte(0); //deflate
+        data.writeByte(0); //adaptive filtering
+        data.writeByte(0); //no interlace
+        writeChunk("IHDR", header.toByteArray(), header.size());
+
+        deflater = new DeflaterOutputStream(new IdatStream(), compressor, CHUNK_SIZE);
+    }
+
+    /**
+     * Appends rows to the image
+     * @param pixels - packed RGB pixels, row by row with a stride of the image width
+     * @param rows - number of rows to take from the pixels
+     * @throws IOException - if the rows cannot be written
+     */
+    public void writeRows(int[] pixels, int rows) throws IOException {
+        if(rowsWritten + rows > height)
+            throw new IllegalStateException("Image only has " + height + " rows");
+
+        for (int y = 0; y < rows; y++)
+        {
+            row[0] = FILTER_SUB;
+            int previous = 0;
+
+            for (int x = 0; x < width; x++)
+            {
+                int pixel = pixels[y*width + x];
+                row[1 + x*3] = (byte) ((pixel >> 16) - (previous >> 16));
+                row[2 + x*3] = (byte) ((pixel >> 8) - (previous >> 8));
+                row[3 + x*3] = (byte) (pixel - previous);
+                previous = pixel;
+            }
+
+            deflater.write(row);
+        }
+
+        rowsWritten += rows;
+    }
+
+    /**
+     * Flushes the compressed data and ends the image
+     * @throws IOException - if the image is incomplete or cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try
+        {
+            deflater.finish();
+            deflater.flush();
+
+            if(rowsWritten != height)
+                throw new IOException("Only " + rowsWritten + " of " + height + " rows were written");
+
+            writeChunk("IEND", new byte[0], 0);
+        }
+        finally
+        {
+            compressor.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Cuts the deflate stream into IDAT chunks
+     */
+    private final class IdatStream extends OutputStream {
+
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int size;
+
+        @Override
+        public void write(int b) throws IOException {
+            if(size == buffer.length)
+                flush();
+
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0)
+            {
+                if(size == buffer.length)
+                    flush();
+
+                int count = Math.min(length, buffer.length - size);
+                System.arraycopy(bytes, offset, buffer, size, count);
+                size += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if(size == 0)
+                return;
+
+            writeChunk("IDAT", buffer, size);
+            size = 0;
+        }
+    }
+}
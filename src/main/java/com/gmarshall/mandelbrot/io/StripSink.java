@@ -0,0 +1,17 @@
+package com.gmarshall.mandelbrot.io;
+
+import java.io.IOException;
+
+/**
+ * Destination of the rendered strips
+ */
+@FunctionalInterface
+public interface StripSink {
+
+    /**
+     * @param pixels - packed RGB pixels of the strip, row by row
+     * @param rows - number of rows in the strip
+     * @throws IOException - if the strip cannot be written
+     */
+    void accept(int[] pixels, int rows) throws IOException;
+}
@@ -0,0 +1,518 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Renders frames on a background thread so the event thread never waits on the render engine
+ *
+ * - Requests are coalesced: only the latest one is kept while the worker is busy
+ * - Views can be requested as suppliers, built on the render thread only if the request is not replaced before it starts,
+ *   for views whose parameters are costly to build, such as the reference orbit of a deep zoom
+ * - A new request cancels the frame in flight, stale frames are never published
+ * - Finished frames are published atomically, the screen always draws a complete frame
+ * - Frames are rendered progressively: a coarse preview first, then finer passes reusing its samples
+ *
+ * The passes are scheduled from the measured cost of a sample: the preview uses the finest step that fits in a few
+ * milliseconds, and the refinement jumps straight to full resolution as soon as the rest of the frame is cheap enough.
+ * Tiles found in the engine tile cache cost nothing, so a pan over cached tiles goes straight to full resolution.
+ * When only the iteration limit changes, the frame resumes the sequences of the previous one instead (see {@link EscapeState}).
+ *
+ * Passes are rendered in a private iteration field then colored into one of three display buffers: the published one,
+ * the one being painted and a free one, so a buffer is never written while it may still be on its way to the screen.
+ * Changing the colors recolors the last field into a new frame without computing anything.
+ *
+ * With antialiasing on, full resolution frames have their edge pixels supersampled before they are published
+ * (see {@link RenderEngine#antialias}). The pass stops at its time budget, whatever is done by then is kept.
+ *
+ * Every full resolution frame is recorded in the {@link RenderMetrics} of the renderer.
+ */
+public final class AsyncRenderer {
+
+    private static final int MAX_STEP = 8; //1/8 resolution preview
+    private static final long PREVIEW_BUDGET = 8_000_000; //nanoseconds allowed for the first pass
+    private static final long REFINE_BUDGET = 40_000_000; //nanoseconds under which the rest of the frame is done in one go
+    private static final long ANTIALIAS_BUDGET = 30_000_000; //nanoseconds allowed to antialias a full resolution frame
+
+    private final RenderEngine engine;
+    private final Runnable onFrame; //called from the render thread when a frame is published
+    private final FrameBuffer[] buffers = new FrameBuffer[3];
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<Frame> front = new AtomicReference<>();
+    private volatile FrameBuffer painting; //buffer the screen is currently drawing
+    private final IterationField field; //passes in progress, only touched by the render thread
+    private volatile Palette palette = Palette.RAINBOW;
+    private volatile boolean smooth;
+    private volatile int antialias; //cells per side of a supersampled pixel, 0 when antialiasing is off
+    private Colorizer colorizer; //lookup table of the last frame, only touched by the render thread
+    private boolean recolor; //colors changed since the last frame, guarded by pending
+    private volatile double sampleCost; //measured nanoseconds per sample, only written by the render thread
+    private final EscapeState state; //sequences of the last resumed frame, only touched by the render thread
+    private ViewParams previous; //last view rendered, only touched by the render thread
+    private final RenderMetrics metrics;
+
+    //input event to displayed frame, in nanoseconds
+    private volatile long previewLatency;
+    private volatile long lastLatency;
+    private volatile long averageLatency;
+
+    /**
+     * @param engine - engine running the tiles
+     * @param width - frame width
+     * @param height - frame height
+     * @param onFrame - notified every time a new frame is ready to be drawn, usually a repaint
+     */
+    public AsyncRenderer(RenderEngine engine, int width, int height, Runnable onFrame) {
+        this.engine = engine;
+        this.onFrame = onFrame;
+
+        for (int i = 0; i < buffers.length; i++)
+            buffers[i] = new FrameBuffer(width, height);
+
+        field = new IterationField(width, height);
+        state = new EscapeState(width, height);
+        metrics = new RenderMetrics(engine, this);
+
+        Thread worker = new Thread(this::run, "mandelbrot-render");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Asks for a new frame, replacing any request not started yet and cancelling the one in flight
+     * Call this right from the input event, its time is the start of the latency measure
+     * @param view - frame to render, must match the buffer size
+     */
+    public void request(ViewParams view) {
+        request(() -> view, false);
+    }
+
+    /**
+     * Same as {@link #request(ViewParams)} for a view built on the render thread, never built if a newer request replaces it first
+     * @param view - builds the frame to render, must match the buffer size
+     */
+    public void request(Supplier<ViewParams> view) {
+        request(view, false);
+    }
+
+    /**
+     * Asks for a new frame computed from scratch, even if only the iteration limit changed
+     * For when the engine settings changed, the sequences of the previous frame were computed with the old ones
+     * @param view - frame to render, must match the buffer size
+     */
+    public void rerender(ViewParams view) {
+        request(() -> view, true);
+    }
+
+    /**
+     * Same as {@link #rerender(ViewParams)} for a view built on the render thread
+     * @param view - builds the frame to render, must match the buffer size
+     */
+    public void rerender(Supplier<ViewParams> view) {
+        request(view, true);
+    }
+
+    private void request(Supplier<ViewParams> view, boolean fresh) {
+        pending.set(new Request(view, generation.incrementAndGet(), System.nanoTime(), fresh));
+
+        synchronized (pending) {
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Changes the colors of the frames, the last frame is recolored right away
+     * @param palette - gradient of the escape times
+     * @param smooth - true to color with the continuous escape time instead of bands
+     */
+    public void setColors(Palette palette, boolean smooth) {
+        this.palette = palette;
+        this.smooth = smooth;
+
+        synchronized (pending) {
+            recolor = true;
+            pending.notifyAll();
+        }
+    }
+
+    /**
+     * Turns antialiasing of the full resolution frames on or off, the last frame is antialiased right away
+     * @param grid - cells per side of a supersampled pixel, 0 for no antialiasing
+     */
+    public void setAntialias(int grid) {
+        this.antialias = grid;
+
+        synchronized (pending) {
+            recolor = true;
+            pending.notifyAll();
+        }
+    }
+
+    public int getAntialias() {
+        return antialias;
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    /**
+     * Gets the latest published frame and marks its buffer as being painted
+     * The buffer stays reserved until the next call, only the painting thread may call this
+     * @return - latest frame, null if none is finished yet
+     */
+    public Frame acquireFrame() {
+        Frame frame;
+
+        do
+        {
+            frame = front.get();
+            painting = frame == null ? null : frame.buffer;
+        }
+        while (front.get() != frame); //published in between, the reservation may have come too late
+
+        return frame;
+    }
+
+    /**
+     * Records the latency of a frame the first time it reaches the screen
+     * @param frame - frame that was just drawn
+     */
+    public void frameDisplayed(Frame frame) {
+        if (frame.displayed)
+            return;
+
+        frame.displayed = true;
+        long latency = System.nanoTime() - frame.requestedAt;
+
+        if(frame.preview)
+            previewLatency = latency;
+
+        if(frame.complete)
+        {
+            lastLatency = latency;
+            averageLatency = averageLatency == 0 ? lastLatency : (averageLatency * 7 + lastLatency) / 8;
+        }
+    }
+
+    /**
+     * @return - time from the input event to the display of the first pass of the last frame, in milliseconds
+     */
+    public double getPreviewLatencyMillis() {
+        return previewLatency / 1e6;
+    }
+
+    /**
+     * @return - time from the input event to the display of the last full resolution frame, in milliseconds
+     */
+    public double getLastLatencyMillis() {
+        return lastLatency / 1e6;
+    }
+
+    /**
+     * @return - moving average of the input to display latency, in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        return averageLatency / 1e6;
+    }
+
+    public RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return - measured cost of one escape time sample, in nanoseconds of wall time
+     */
+    public double getSampleCost() {
+        return sampleCost;
+    }
+
+    private void run() {
+        try
+        {
+            while (true)
+            {
+                Request request;
+                boolean recolorOnly;
+
+                synchronized (pending) {
+                    while ((request = pending.getAndSet(null)) == null && !recolor)
+                        pending.wait();
+
+                    recolorOnly = request == null;
+                    recolor = false;
+                }
+
+                if (recolorOnly)
+                    recolor();
+                else
+                    render(request);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void render(Request request) {
+        ViewParams view = request.view.get();
+        BooleanSupplier cancelled = () -> generation.get() != request.generation;
+        Precision precision = engine.getPrecision(view);
+        boolean resumable = !request.fresh && (precision == Precision.FLOAT || precision == Precision.DOUBLE) //the state keeps doubles
+                && (state.matches(view) || view.samePlane(previous));
+        RenderStats stats = new RenderStats(); //work of this frame alone, other views may share the engine
+        FrameEvent event = new FrameEvent();
+        previous = view;
+        event.begin();
+
+        if (resumable) //only the extra iterations are computed, cheap enough to skip the preview
+        {
+            long start = System.nanoTime();
+
+            if (engine.resume(view, field, state, cancelled, stats))
+            {
+                long plot = System.nanoTime() - start;
+                publish(request, view, true, true);
+                frameRendered(event, view, true, 1, plot, stats);
+            }
+
+            return;
+        }
+
+        int step = firstStep(view);
+        int previousStep = 0;
+        int passes = 0;
+        long plot = 0;
+
+        while (true)
+        {
+            long samples = engine.sampleCount(view, step, previousStep); //before the pass fills the tile cache
+            long start = System.nanoTime();
+
+            if (!engine.render(view, field, step, previousStep, cancelled, stats))
+                return;
+
+            long elapsed = System.nanoTime() - start;
+            plot += elapsed;
+            passes++;
+
+            if (samples > 0) //a frame served from the tile cache says nothing about the cost of a sample
+                sampleCost = (double) elapsed / samples;
+
+            publish(request, view, previousStep == 0, step == 1);
+
+            if (step == 1)
+            {
+                frameRendered(event, view, false, passes, plot, stats);
+                return;
+            }
+
+            previousStep = step;
+            step = nextStep(view, step);
+        }
+    }
+
+    /**
+     * Records a full resolution frame in the metrics and the flight recording
+     * @param event - event begun with the frame
+     * @param view - frame rendered
+     * @param resumed - true if the frame continued the sequences of the previous one
+     * @param passes - number of passes of the frame
+     * @param plot - nanoseconds spent in the passes
+     * @param stats - work done by the passes
+     */
+    private void frameRendered(FrameEvent event, ViewParams view, boolean resumed, int passes, long plot, RenderStats stats) {
+        double inside = field.insideFraction();
+        metrics.frameRendered(plot, stats, inside, engine.usesTileCache(view));
+
+        if (event.shouldCommit())
+        {
+            event.width = view.getWidth();
+            event.height = view.getHeight();
+            event.iterationsMax = view.getIterationsMax();
+            event.julia = view.isJulia();
+            event.resumed = resumed;
+            event.precision = String.valueOf(stats.getPrecision());
+            event.passes = passes;
+            event.plotTime = plot;
+            event.evaluations = stats.getEvaluations();
+            event.iterations = stats.getIterations();
+            event.skippedIterations = stats.getSkippedIterations();
+            event.insideFraction = inside;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param view - frame to render
+     * @return - finest step whose pass fits in the preview budget
+     */
+    private int firstStep(ViewParams view) {
+        for (int step = 1; step < MAX_STEP; step *= 2)
+            if (estimate(view, step, 0) <= PREVIEW_BUDGET)
+                return step;
+
+        return MAX_STEP;
+    }
+
+    /**
+     * @param view - frame to render
+     * @param step - step of the pass just done
+     * @return - full resolution if the rest of the frame is cheap, otherwise the next finer pass
+     */
+    private int nextStep(ViewParams view, int step) {
+        return estimate(view, 1, step) <= REFINE_BUDGET ? 1 : step / 2;
+    }
+
+    /**
+     * @return - expected duration of a pass in nanoseconds, from the cost of the last one
+     */
+    private double estimate(ViewParams view, int step, int previousStep) {
+        if (sampleCost == 0) //nothing measured yet
+            return Double.MAX_VALUE;
+
+        return engine.sampleCount(view, step, previousStep) * sampleCost;
+    }
+
+    private void publish(Request request, ViewParams view, boolean preview, boolean complete) {
+        FrameBuffer target = freeBuffer();
+
+        engine.colorize(field, target.getPixels(), colorizer());
+
+        if (complete && !antialias(view, target, request.generation))
+            return;
+
+        front.set(new Frame(target, view, request.requestedAt, preview, complete));
+        onFrame.run();
+    }
+
+    /**
+     * Publishes the last frame again with the current colors, the field still holds it since no request is pending
+     */
+    private void recolor() {
+        Frame published = front.get();
+
+        if (published == null)
+            return;
+
+        FrameBuffer target = freeBuffer();
+
+        engine.colorize(field, target.getPixels(), colorizer());
+
+        if (published.complete && !antialias(published.view, target, generation.get()))
+            return;
+
+        Frame frame = new Frame(target, published.view, published.requestedAt, published.preview, published.complete);
+        frame.displayed = true; //already measured, a recolor is not an input to display latency
+        front.set(frame);
+        onFrame.run();
+    }
+
+    /**
+     * Supersamples the edges of a full resolution frame colored from the field, as many as fit in the time budget
+     * @param view - frame in the field
+     * @param target - buffer the field was colored into
+     * @param generation - request the frame belongs to
+     * @return - false if a newer request came in meanwhile, the frame must not be published
+     */
+    private boolean antialias(ViewParams view, FrameBuffer target, long generation) {
+        int grid = antialias;
+        BooleanSupplier stale = () -> this.generation.get() != generation;
+
+        if (grid < 2)
+            return true;
+
+        long deadline = System.nanoTime() + ANTIALIAS_BUDGET;
+        //edge pixels are close to the set and cost more than the average sample, the deadline stops the pass if they take too long
+        int budget = sampleCost == 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, ANTIALIAS_BUDGET / (sampleCost * (grid * grid - 1)));
+
+        engine.antialias(view, field, target.getPixels(), colorizer(), grid, budget,
+                () -> stale.getAsBoolean() || System.nanoTime() > deadline, null);
+
+        return !stale.getAsBoolean();
+    }
+
+    /**
+     * @return - lookup table for the current colors and the limit of the field, only rebuilt when one of them changes
+     */
+    private Colorizer colorizer() {
+        Palette palette = this.palette;
+        boolean smooth = this.smooth;
+
+        if (colorizer == null || colorizer.getPalette() != palette || colorizer.isSmooth() != smooth
+                || colorizer.getIterationsMax() != field.getIterationsMax())
+            colorizer = new Colorizer(palette, smooth, field.getIterationsMax());
+
+        return colorizer;
+    }
+
+    /**
+     * @return - a buffer that is neither published nor being painted
+     */
+    private FrameBuffer freeBuffer() {
+        Frame published = front.get();
+        FrameBuffer reserved = painting;
+
+        for (FrameBuffer buffer : buffers)
+            if ((published == null || buffer != published.buffer) && buffer != reserved)
+                return buffer;
+
+        throw new IllegalStateException("No free frame buffer");
+    }
+
+    /**
+     * Complete frame ready to be drawn
+     */
+    public static final class Frame {
+
+        private final FrameBuffer buffer;
+        private final ViewParams view;
+        private final long requestedAt;
+        private final boolean preview; //first pass of the request
+        private final boolean complete; //full resolution
+        private boolean displayed; //only touched by the painting thread
+
+        private Frame(FrameBuffer buffer, ViewParams view, long requestedAt, boolean preview, boolean complete) {
+            this.buffer = buffer;
+            this.view = view;
+            this.requestedAt = requestedAt;
+            this.preview = preview;
+            this.complete = complete;
+        }
+
+        public FrameBuffer getBuffer() {
+            return buffer;
+        }
+
+        public ViewParams getView() {
+            return view;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private static final class Request {
+
+        private final Supplier<ViewParams> view; //built by the render thread when the request starts
+        private final long generation;
+        private final long requestedAt;
+        private final boolean fresh; //never resumes the previous sequences
+
+        private Request(Supplier<ViewParams> view, long generation, long requestedAt, boolean fresh) {
+            this.view = view;
+            this.generation = generation;
+            this.requestedAt = requestedAt;
+            this.fresh = fresh;
+        }
+    }
+}
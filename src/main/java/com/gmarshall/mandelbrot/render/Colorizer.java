@@ -0,0 +1,88 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.awt.Color;
+
+/**
+ * Turns an iteration field into pixel colors through a lookup table
+ * The palette is sampled once when the colorizer is built, coloring a pixel is then a single array read,
+ * so switching palettes only costs a pass over the field, far less than a frame.
+ *
+ * - Banded coloring uses the whole escape time: up to {@link #TABLE_SIZE} iterations every count gets its own color
+ * - Smooth coloring uses the continuous escape time, spread over the table
+ */
+public final class Colorizer {
+
+    public static final int TABLE_SIZE = 4096;
+    private static final int BLACK = Color.BLACK.getRGB();
+
+    private final Palette palette;
+    private final boolean smooth;
+    private final int iterationsMax;
+    private final int[] table;
+
+    /**
+     * @param palette - gradient to sample
+     * @param smooth - true to color with the continuous escape time
+     * @param iterationsMax - iteration limit of the fields to color
+     */
+    public Colorizer(Palette palette, boolean smooth, int iterationsMax) {
+        this.palette = palette;
+        this.smooth = smooth;
+        this.iterationsMax = iterationsMax;
+
+        table = new int[smooth ? TABLE_SIZE : Math.min(iterationsMax, TABLE_SIZE)];
+
+        for (int i = 0; i < table.length; i++)
+            table[i] = palette.rgb((i*1.0f)/table.length);
+    }
+
+    public Palette getPalette() {
+        return palette;
+    }
+
+    public boolean isSmooth() {
+        return smooth;
+    }
+
+    public int getIterationsMax() {
+        return iterationsMax;
+    }
+
+    /**
+     * @param iterationsMax - iteration limit of the fields to color
+     * @return - this colorizer if it already has that limit, otherwise one with the same palette
+     */
+    public Colorizer forLimit(int iterationsMax) {
+        return iterationsMax == this.iterationsMax ? this : new Colorizer(palette, smooth, iterationsMax);
+    }
+
+    /**
+     * @param count - escape time
+     * @param smoothCount - continuous escape time
+     * @return - packed RGB color, black inside the set
+     */
+    public int color(int count, float smoothCount) {
+        if(count >= iterationsMax)
+            return BLACK;
+
+        if(smooth)
+            return table[Math.min((int) (smoothCount / iterationsMax * TABLE_SIZE), TABLE_SIZE - 1)];
+
+        return table[table.length == iterationsMax ? count : (int) ((long) count * table.length / iterationsMax)];
+    }
+
+    /**
+     * Colors a range of pixels
+     * @param field - iteration field, rendered with the same iteration limit
+     * @param pixels - packed RGB pixels, indexed like the field
+     * @param from - first pixel index
+     * @param to - last pixel index, excluded
+     */
+    public void colorize(IterationField field, int[] pixels, int from, int to) {
+        int[] counts = field.getCounts();
+        float[] smoothCounts = field.getSmooth();
+
+        for (int i = from; i < to; i++)
+            pixels[i] = color(counts[i], smoothCounts[i]);
+    }
+}
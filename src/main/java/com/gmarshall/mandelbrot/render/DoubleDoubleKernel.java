@@ -0,0 +1,127 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+/*
+ *
+ * A double-double is an unevaluated sum hi + lo of two doubles, lo being below half a rounding step of hi:
+ * about 106 bits of significand, with the speed of hardware doubles rather than BigDecimal.
+ *
+ * - The exact product of two doubles is p + e with p = a*b and e = fma(a, b, -p)
+ * - The exact sum of two doubles is s + e with s = a + b and e recovered from the rounding of s (Knuth's two sum)
+ *
+ * The products and sums of the sequence are built from these, dropping the terms below 2^-106 of the result.
+ * Every value lives in a pair of local variables, the loop allocates nothing.
+ *
+ */
+
+/**
+ * Escape time algorithm in double-doubles, for zooms past the resolution of doubles, see {@link Precision#DOUBLE_DOUBLE}
+ */
+final class DoubleDoubleKernel {
+
+    static final double PERIOD_EPSILON = 1e-28; //same margin as MandelUtil over the rounding of a double-double
+
+    private DoubleDoubleKernel() {
+    }
+
+    /**
+     * Escape time algorithm with a continuous count, each coordinate given as hi + lo
+     * @param zRealHi - real part of Z0
+     * @param zRealLo - its low part
+     * @param zImaginaryHi - imaginary part of Z0
+     * @param zImaginaryLo - its low part
+     * @param cRealHi - real part of the point we wish to test
+     * @param cRealLo - its low part
+     * @param cImaginaryHi - imaginary part of the point we wish to test
+     * @param cImaginaryLo - its low part
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @param skipped - iterations the early outs did not run are added to its first element, null if not counted
+     * @return - escape time plus a fraction in [0, 1), iterationMax if the sequence is stable
+     */
+    static double smoothEscapeTime(double zRealHi, double zRealLo, double zImaginaryHi, double zImaginaryLo,
+                                   double cRealHi, double cRealLo, double cImaginaryHi, double cImaginaryLo,
+                                   int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        if(checkBulbs && MandelUtil.isInMainBulbs(cRealHi, cImaginaryHi)) //the bulbs are far wider than a double rounding step
+            return MandelUtil.skip(iterationMax, 0, skipped);
+
+        double x = zRealHi;
+        double xLo = zRealLo;
+        double y = zImaginaryHi;
+        double yLo = zImaginaryLo;
+        double cycleX = Double.NaN; //the first term compared is Z1
+        double cycleXLo = 0;
+        double cycleY = Double.NaN;
+        double cycleYLo = 0;
+        int window = 1;
+        int sinceCheck = 0;
+
+        for (int i = -1; i < iterationMax; i++) //the first round turns Z0 into Z1 without testing it
+        {
+            //x² and y²
+            double x2 = x*x;
+            double x2Lo = Math.fma(x, x, -x2) + 2*x*xLo;
+            double y2 = y*y;
+            double y2Lo = Math.fma(y, y, -y2) + 2*y*yLo;
+
+            if(i >= 0 && x2 + y2 > 4)
+                return MandelUtil.smoothCount(i, x2 + y2);
+
+            //2xy + ci
+            double xy = 2*x*y;
+            double xyLo = 2*(Math.fma(x, y, -x*y) + x*yLo + xLo*y);
+            double sum = xy + cImaginaryHi;
+            double rounding = sum - xy;
+            double error = (xy - (sum - rounding)) + (cImaginaryHi - rounding) + xyLo + cImaginaryLo;
+            y = sum + error;
+            yLo = error - (y - sum);
+
+            //x² - y² + cr
+            double difference = x2 - y2;
+            rounding = difference - x2;
+            error = (x2 - (difference - rounding)) + (-y2 - rounding) + x2Lo - y2Lo;
+            double differenceHi = difference + error;
+            double differenceLo = error - (differenceHi - difference);
+            sum = differenceHi + cRealHi;
+            rounding = sum - differenceHi;
+            error = (differenceHi - (sum - rounding)) + (cRealHi - rounding) + differenceLo + cRealLo;
+            x = sum + error;
+            xLo = error - (x - sum);
+
+            if(checkPeriod)
+            {
+                if(Math.abs(x - cycleX + (xLo - cycleXLo)) + Math.abs(y - cycleY + (yLo - cycleYLo)) < PERIOD_EPSILON)
+                    return MandelUtil.skip(iterationMax, i + 1, skipped); //Z1 came out of round -1
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleXLo = xLo;
+                    cycleY = y;
+                    cycleYLo = yLo;
+                }
+            }
+        }
+
+        return iterationMax;
+    }
+
+    /**
+     * Low part of a grid coordinate whose high part is {@link ViewParams#real} or {@link ViewParams#imaginary}
+     * The distance to the origin is exact as long as the origin is within 2^52 pixels, only the division rounds.
+     * @param position - screen position of the pixel
+     * @param origin - screen position of the grid origin
+     * @param zoom - pixels per grid unit
+     * @return - what the division rounded off
+     */
+    static double coordinateLo(double position, double origin, double zoom) {
+        double distance = position - origin;
+        double hi = distance / zoom;
+
+        return Math.fma(-hi, zoom, distance) / zoom;
+    }
+}
@@ -0,0 +1,193 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+import java.util.Arrays;
+
+/**
+ * Where the sequence of every pixel of a frame stopped, so a higher iteration limit only pays for the extra iterations
+ * Pixels that escaped keep their count whatever the limit, the others resume from their last term instead of Z1.
+ * A lower limit costs nothing either: a pixel that went further is simply shown as not escaped.
+ *
+ * Kept in primitive arrays indexed like the pixels, about 21 bytes per pixel.
+ * The state belongs to one view: it is reset as soon as anything but the iteration limit changes.
+ */
+public final class EscapeState {
+
+    private static final double PERIOD_EPSILON = 1e-14; //same as MandelUtil
+
+    //status of a pixel
+    private static final byte NEW = 0; //nothing computed yet
+    private static final byte RUNNING = 1; //bounded up to the iteration reached
+    private static final byte ESCAPED = 2; //escaped at the iteration reached
+    private static final byte INSIDE = 3; //proven to never escape
+
+    private final int width;
+    private final int height;
+    private final double[] zReal; //last term of running pixels, continuous escape time of escaped ones
+    private final double[] zImaginary;
+    private final int[] iterations; //iteration reached, or where the sequence was proven bounded
+    private final byte[] status;
+    private ViewParams view; //view the state belongs to, null before the first render
+
+    /**
+     * @param width - frame width
+     * @param height - frame height
+     */
+    public EscapeState(int width, int height) {
+        this.width = width;
+        this.height = height;
+        zReal = new double[width * height];
+        zImaginary = new double[width * height];
+        iterations = new int[width * height];
+        status = new byte[width * height];
+    }
+
+    /**
+     * @param view - frame to render
+     * @return - true if the state can be resumed for this view, whatever its iteration limit
+     */
+    public boolean matches(ViewParams view) {
+        return view.samePlane(this.view);
+    }
+
+    /**
+     * Makes the state ready for a view, forgetting everything if it belongs to another one
+     * @param view - frame to render
+     */
+    void prepare(ViewParams view) {
+        if(view.getWidth() != width || view.getHeight() != height)
+            throw new IllegalArgumentException("View is " + view.getWidth() + "x" + view.getHeight() + ", state is " + width + "x" + height);
+        if(view.getReference() != null)
+            throw new IllegalArgumentException("Deep zooms cannot be resumed");
+
+        if(!matches(view))
+            Arrays.fill(status, NEW);
+
+        this.view = view;
+    }
+
+    /**
+     * Continues the sequence of a pixel up to the iteration limit
+     * Same counts as {@link MandelUtil#smoothEscapeTime(double, double, double, double, int, boolean, boolean)}
+     * @param index - pixel index, y * width + x
+     * @param real - real part of the point under the pixel
+     * @param imaginary - imaginary part of the point under the pixel
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @return - continuous escape time of the pixel
+     */
+    double advance(int index, double real, double imaginary, int iterationMax, boolean checkBulbs, boolean checkPeriod) {
+        boolean julia = view.isJulia();
+        double cReal = julia ? view.getCReal() : real;
+        double cImaginary = julia ? view.getCImaginary() : imaginary;
+        double x;
+        double y;
+        int i;
+
+        switch (status[index])
+        {
+            case ESCAPED:
+                return iterations[index] < iterationMax ? zReal[index] : iterationMax;
+            case INSIDE:
+                return iterationMax;
+            case RUNNING:
+                if(iterations[index] >= iterationMax)
+                    return iterationMax;
+
+                x = zReal[index];
+                y = zImaginary[index];
+                i = iterations[index];
+                break;
+            default:
+                if(checkBulbs && MandelUtil.isInMainBulbs(cReal, cImaginary))
+                {
+                    status[index] = INSIDE;
+                    iterations[index] = 0;
+                    return iterationMax;
+                }
+
+                double zr = julia ? real : view.getZReal();
+                double zi = julia ? imaginary : view.getZImaginary();
+
+                //Z1
+                x = zr*zr - zi*zi + cReal;
+                y = 2*zr*zi + cImaginary;
+                i = 0;
+        }
+
+        double x2 = x*x;
+        double y2 = y*y;
+        double cycleX = x; //Brent's method starts over from the resumed term
+        double cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
+
+        while (i < iterationMax){
+            if(x2 + y2 > 4)
+            {
+                status[index] = ESCAPED;
+                iterations[index] = i;
+                zReal[index] = MandelUtil.smoothCount(i, x2 + y2);
+                return zReal[index];
+            }
+
+            y = 2*x*y + cImaginary;
+            x = x2 - y2 + cReal;
+            x2 = x*x;
+            y2 = y*y;
+            i++;
+
+            if(checkPeriod)
+            {
+                if(Math.abs(x - cycleX) + Math.abs(y - cycleY) < PERIOD_EPSILON)
+                {
+                    status[index] = INSIDE;
+                    iterations[index] = i;
+                    return iterationMax;
+                }
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleY = y;
+                }
+            }
+        }
+
+        status[index] = RUNNING;
+        zReal[index] = x;
+        zImaginary[index] = y;
+        iterations[index] = i;
+        return i;
+    }
+
+    /**
+     * @param index - pixel index, y * width + x
+     * @return - iteration a pending pixel resumes from, 0 if it starts over
+     */
+    int reached(int index) {
+        return status[index] == RUNNING ? iterations[index] : 0;
+    }
+
+    /**
+     * @param index - pixel index, y * width + x
+     * @return - iteration the sequence of the pixel stopped at: its escape time, its last term, or where it was proven bounded
+     */
+    int stopped(int index) {
+        return iterations[index];
+    }
+
+    /**
+     * @param index - pixel index, y * width + x
+     * @param iterationMax - iteration limit of the render
+     * @return - true if the pixel still has to be iterated for this limit
+     */
+    boolean isPending(int index, int iterationMax) {
+        byte pixel = status[index];
+        return pixel == NEW || pixel == RUNNING && iterations[index] < iterationMax;
+    }
+}
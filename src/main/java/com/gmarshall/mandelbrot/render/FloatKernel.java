@@ -0,0 +1,83 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+/**
+ * Escape time algorithm in floats, for views zoomed out enough to be resolved by them, see {@link Precision#FLOAT}
+ * Same algorithm as {@link MandelUtil#smoothEscapeTime(double, double, double, double, int, boolean, boolean)},
+ * the vector kernel gives exactly the same counts with float lanes.
+ */
+final class FloatKernel {
+
+    static final float PERIOD_EPSILON = 1e-6f; //a few rounding steps of a float around 1
+
+    private FloatKernel() {
+    }
+
+    /**
+     * Escape time algorithm with a continuous count
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReal - real part of the point we wish to test
+     * @param cImaginary - imaginary part of the point we wish to test
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @param skipped - iterations the early outs did not run are added to its first element, null if not counted
+     * @return - escape time plus a fraction in [0, 1), iterationMax if the sequence is stable
+     */
+    static double smoothEscapeTime(float zReal, float zImaginary, float cReal, float cImaginary, int iterationMax,
+                                   boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        if(checkBulbs && isInMainBulbs(cReal, cImaginary))
+            return MandelUtil.skip(iterationMax, 0, skipped);
+
+        float x = zReal*zReal - zImaginary*zImaginary + cReal;
+        float y = 2*zReal*zImaginary + cImaginary;
+        float x2 = x*x;
+        float y2 = y*y;
+        float cycleX = x;
+        float cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
+        int i = 0;
+
+        while (i < iterationMax){
+            if(x2 + y2 > 4)
+                return MandelUtil.smoothCount(i, x2 + y2);
+
+            y = 2*x*y + cImaginary;
+            x = x2 - y2 + cReal;
+            x2 = x*x;
+            y2 = y*y;
+            i++;
+
+            if(checkPeriod)
+            {
+                if(Math.abs(x - cycleX) + Math.abs(y - cycleY) < PERIOD_EPSILON)
+                    return MandelUtil.skip(iterationMax, i, skipped);
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleY = y;
+                }
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Same as {@link MandelUtil#isInMainBulbs(double, double)} in floats
+     */
+    static boolean isInMainBulbs(float cReal, float cImaginary) {
+        float y2 = cImaginary*cImaginary;
+        float shifted = cReal - 0.25f;
+        float q = shifted*shifted + y2;
+
+        return q*(q + shifted) <= 0.25f*y2
+                || (cReal + 1)*(cReal + 1) + y2 <= 0.0625f;
+    }
+}
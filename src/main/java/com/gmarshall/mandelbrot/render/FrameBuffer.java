@@ -0,0 +1,35 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * Raster of the mandelbrot set
+ * Pixels are packed RGB ints stored row by row, backed directly by the image so the whole frame is drawn with a single blit
+ */
+public final class FrameBuffer {
+
+    private final BufferedImage image;
+    private final int[] pixels; //pixel (x, y) is at y*width + x
+
+    public FrameBuffer(int width, int height) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+}
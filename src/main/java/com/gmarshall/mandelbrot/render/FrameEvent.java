@@ -0,0 +1,66 @@
+package com.gmarshall.mandelbrot.render;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of a full resolution frame, from the start of its first pass to its publication
+ */
+@Name("com.gmarshall.mandelbrot.Frame")
+@Label("Frame")
+@Category("Mandelbrot")
+@Description("Frame rendered by an asynchronous renderer")
+@StackTrace(false)
+final class FrameEvent extends Event {
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Iteration Limit")
+    int iterationsMax;
+
+    @Label("Julia Set")
+    boolean julia;
+
+    @Label("Resumed")
+    @Description("Only the extra iterations of a raised limit were computed")
+    boolean resumed;
+
+    @Label("Precision")
+    @Description("Number format of the escape times")
+    String precision;
+
+    @Label("Passes")
+    int passes;
+
+    @Label("Plot Time")
+    @Description("Time spent in the passes, without coloring")
+    @Timespan(Timespan.NANOSECONDS)
+    long plotTime;
+
+    @Label("Evaluations")
+    @Description("Pixels that went through the escape time algorithm")
+    long evaluations;
+
+    @Label("Iterations")
+    @Description("Iterations run for the pixels computed")
+    long iterations;
+
+    @Label("Skipped Iterations")
+    @Description("Iterations the early outs proved unnecessary, the escape times of the pixels computed are the sum of both")
+    long skippedIterations;
+
+    @Label("Inside Fraction")
+    @Description("Pixels that reached the iteration limit")
+    @Percentage
+    double insideFraction;
+}
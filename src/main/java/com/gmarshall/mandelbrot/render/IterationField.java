@@ -0,0 +1,76 @@
+package com.gmarshall.mandelbrot.render;
+
+/**
+ * Result of the escape time algorithm for every pixel of a frame, before any coloring
+ * Colors are picked afterwards by a {@link Colorizer}, so changing the palette never recomputes the fractal.
+ * Both arrays are indexed row by row with a stride of the width.
+ */
+public final class IterationField {
+
+    private final int width;
+    private final int height;
+    private final int[] counts; //escape time, the iteration limit for pixels in the set
+    private final float[] smooth; //continuous escape time, see MandelUtil#smoothEscapeTime
+    private int iterationsMax; //limit of the last render
+
+    /**
+     * @param width - frame width
+     * @param height - frame height
+     */
+    public IterationField(int width, int height) {
+        this.width = width;
+        this.height = height;
+        counts = new int[width * height];
+        smooth = new float[width * height];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getCounts() {
+        return counts;
+    }
+
+    public float[] getSmooth() {
+        return smooth;
+    }
+
+    /**
+     * @return - iteration limit of the last render, counts equal to it are points of the set
+     */
+    public int getIterationsMax() {
+        return iterationsMax;
+    }
+
+    /**
+     * @return - share of the pixels that reached the iteration limit, from 0 to 1
+     */
+    public double insideFraction() {
+        long inside = 0;
+
+        for (int count : counts)
+            if(count >= iterationsMax)
+                inside++;
+
+        return (double) inside / counts.length;
+    }
+
+    void setIterationsMax(int iterationsMax) {
+        this.iterationsMax = iterationsMax;
+    }
+
+    /**
+     * Stores the result of a pixel
+     * @param index - pixel index, y * width + x
+     * @param smoothCount - continuous escape time, its whole part is the escape time
+     */
+    void set(int index, double smoothCount) {
+        counts[index] = (int) smoothCount;
+        smooth[index] = (float) smoothCount;
+    }
+}
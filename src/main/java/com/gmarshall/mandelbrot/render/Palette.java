@@ -0,0 +1,90 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Color gradients for the escape time, from the pixels escaping right away to the ones never escaping
+ * Points of the set are always black, see {@link Colorizer}
+ */
+public enum Palette {
+
+    /**
+     * Full hue circle, the original colors of the plotter
+     */
+    RAINBOW {
+        @Override
+        int rgb(float position) {
+            return Color.HSBtoRGB(position, 1.0f, 1.0f);
+        }
+    },
+
+    /**
+     * Black through red and yellow to white
+     */
+    FIRE {
+        @Override
+        int rgb(float position) {
+            return pack(3 * position, 3 * position - 1, 3 * position - 2);
+        }
+    },
+
+    /**
+     * Deep blue through cyan to white
+     */
+    OCEAN {
+        @Override
+        int rgb(float position) {
+            return pack(2 * position - 1, 1.5f * position, 0.3f + position);
+        }
+    },
+
+    GRAYSCALE {
+        @Override
+        int rgb(float position) {
+            return pack(position, position, position);
+        }
+    };
+
+    /**
+     * @param name - palette name, in any case
+     * @return - the palette of that name
+     * @throws IllegalArgumentException - if there is no such palette, with the valid names in the message
+     */
+    public static Palette parse(String name) {
+        try
+        {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException("Unknown palette " + name + ", expected one of " + names());
+        }
+    }
+
+    /**
+     * @return - names of the palettes, lower case and comma separated
+     */
+    public static String names() {
+        return Arrays.stream(values()).map(palette -> palette.name().toLowerCase(Locale.ROOT)).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * @param position - escape time relative to the iteration limit, in [0, 1)
+     * @return - packed RGB color
+     */
+    abstract int rgb(float position);
+
+    /**
+     * @return - packed RGB color, channels are clamped to [0, 1]
+     */
+    private static int pack(float red, float green, float blue) {
+        return channel(red) << 16 | channel(green) << 8 | channel(blue);
+    }
+
+    private static int channel(float value) {
+        return Math.round(Math.max(0, Math.min(1, value)) * 255);
+    }
+}
@@ -0,0 +1,62 @@
+package com.gmarshall.mandelbrot.render;
+
+/**
+ * Number format the escape time of a view is computed in, picked from the distance between two pixels
+ * Every format is used until a pixel spans too few of its rounding steps around the escape radius:
+ * past that, rounding errors pile up along the sequence and pixels near the boundary get the escape times of their neighbours.
+ * Narrower formats go faster, floats fill twice as many vector lanes as doubles.
+ */
+public enum Precision {
+
+    /**
+     * 24 bit floats, for the zoomed out views
+     */
+    FLOAT("float"),
+
+    /**
+     * 53 bit doubles
+     */
+    DOUBLE("double"),
+
+    /**
+     * Pairs of doubles, about 106 bits, for zooms doubles can no longer resolve, see {@link DoubleDoubleKernel}
+     */
+    DOUBLE_DOUBLE("double-double"),
+
+    /**
+     * Doubles around a high precision reference, the only format of deep zoom views, see {@link ReferenceOrbit}
+     */
+    PERTURBATION("perturbation");
+
+    //smallest distance between two pixels of each format, where about 1% of the pixels of a boundary view are off by a band
+    private static final double FLOAT_SPACING = 0x1p-10; //4096 float rounding steps around the escape radius
+    private static final double DOUBLE_SPACING = 0x1p-30; //2^21 double rounding steps, deep views iterate longer so errors grow further
+    private static final int FLOAT_ITERATIONS = 1 << 24; //the vector kernel counts in floats
+
+    private final String label;
+
+    Precision(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @param view - frame to render
+     * @return - narrowest format that still resolves the pixels of the view
+     */
+    public static Precision of(ViewParams view) {
+        if(view.getReference() != null)
+            return PERTURBATION;
+
+        double spacing = 1 / view.getZoom();
+
+        if(spacing >= FLOAT_SPACING && view.getIterationsMax() <= FLOAT_ITERATIONS)
+            return FLOAT;
+
+        return spacing >= DOUBLE_SPACING ? DOUBLE : DOUBLE_DOUBLE;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,141 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/*
+ *
+ * Past a zoom of about 1e13 pixels per unit, the distance between two pixels is lost in the rounding of a double
+ * and every pixel computes the same sequence. Computing every pixel with BigDecimal would be far too slow.
+ *
+ * Perturbation only computes a single sequence Zn in high precision, for a reference point C at the middle of the view.
+ * Every pixel c = C + dc is then iterated as its distance to that sequence, zn = Zn + dzn, which stays small enough for doubles:
+ *
+ * dz0 = 0 (same Z0 for every pixel)
+ * dzn+1 = 2.Zn.dzn + dzn² + dc
+ *
+ * When the pixel sequence passes closer to Z0 than its own distance dzn, the distance has lost its precision (a "glitch").
+ * The pixel is then rebased: it carries on from the start of the reference with dz = zn - Z0, which is exact.
+ * The same happens when the reference escapes before the pixel, so a single reference is enough for the whole view.
+ *
+ */
+
+/**
+ * High precision sequence of a reference point, stored as doubles, with the perturbed escape time algorithm around it
+ */
+public final class ReferenceOrbit {
+
+    private final double[] real; //Zn, from Z0 up to the escape of the reference or the iteration limit
+    private final double[] imaginary;
+    private final int length;
+
+    private ReferenceOrbit(double[] real, double[] imaginary, int length) {
+        this.real = real;
+        this.imaginary = imaginary;
+        this.length = length;
+    }
+
+    /**
+     * Computes the sequence of the reference point in BigDecimal
+     * @param cReal - real part of the reference point
+     * @param cImaginary - imaginary part of the reference point
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param iterationsMax - iteration limit of the render
+     * @param digits - significant digits of the computation, see {@link #digitsFor}
+     * @return - orbit of the reference
+     */
+    public static ReferenceOrbit compute(BigDecimal cReal, BigDecimal cImaginary, double zReal, double zImaginary, int iterationsMax, int digits) {
+        MathContext context = new MathContext(digits);
+        BigDecimal two = BigDecimal.valueOf(2);
+        BigDecimal x = new BigDecimal(zReal);
+        BigDecimal y = new BigDecimal(zImaginary);
+        double[] real = new double[iterationsMax + 2];
+        double[] imaginary = new double[iterationsMax + 2];
+        int length = 0;
+
+        real[length] = zReal;
+        imaginary[length++] = zImaginary;
+
+        while (length < real.length)
+        {
+            BigDecimal nextX = x.multiply(x, context).subtract(y.multiply(y, context), context).add(cReal, context);
+            y = two.multiply(x, context).multiply(y, context).add(cImaginary, context);
+            x = nextX;
+
+            real[length] = x.doubleValue();
+            imaginary[length] = y.doubleValue();
+
+            if(real[length]*real[length] + imaginary[length]*imaginary[length] > 4) //escaped, pixels past this point get rebased
+                return new ReferenceOrbit(real, imaginary, length + 1);
+
+            length++;
+        }
+
+        return new ReferenceOrbit(real, imaginary, length);
+    }
+
+    /**
+     * @param zoom - pixels per grid unit
+     * @param width - largest dimension of the view in pixels
+     * @return - digits needed to tell apart the points of the view, with a safety margin
+     */
+    public static int digitsFor(double zoom, int width) {
+        return Math.max(20, (int) Math.ceil(Math.log10(zoom * width)) + 20);
+    }
+
+    /**
+     * @return - number of terms stored, Z0 included
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Continuous escape time of a pixel as a perturbation of the reference
+     * Same counts as {@link MandelUtil#smoothEscapeTime(double, double, double, double, int, boolean, boolean)}
+     * for the point C + dc, up to the precision of the reference.
+     * @param dcReal - real distance from the reference point to the pixel
+     * @param dcImaginary - imaginary distance from the reference point to the pixel
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @return - escape time plus a fraction in [0, 1), iterationMax if the sequence is stable
+     */
+    public double smoothEscapeTime(double dcReal, double dcImaginary, int iterationMax) {
+        double dx = 0; //dzn
+        double dy = 0;
+        int m = 0; //position in the reference
+
+        for (int i = 0; i < iterationMax; i++)
+        {
+            double zr = real[m];
+            double zi = imaginary[m];
+
+            //dzn+1 = 2.Zn.dzn + dzn² + dc
+            double nextX = 2*(zr*dx - zi*dy) + dx*dx - dy*dy + dcReal;
+            dy = 2*(zr*dy + zi*dx) + 2*dx*dy + dcImaginary;
+            dx = nextX;
+            m++;
+
+            double x = real[m] + dx;
+            double y = imaginary[m] + dy;
+            double magnitude = x*x + y*y;
+
+            if(magnitude > 4)
+                return MandelUtil.smoothCount(i, magnitude);
+
+            double fromStartX = x - real[0];
+            double fromStartY = y - imaginary[0];
+
+            if(fromStartX*fromStartX + fromStartY*fromStartY < dx*dx + dy*dy || m == length - 1) //glitch or end of the reference: rebase
+            {
+                dx = fromStartX;
+                dy = fromStartY;
+                m = 0;
+            }
+        }
+
+        return iterationMax;
+    }
+}
@@ -0,0 +1,1115 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders the mandelbrot set, or a julia set, on all cores
+ * The viewport is split into small square tiles which are handed out through a work stealing pool:
+ * tiles inside the set cost far more than the ones outside, so idle workers steal the remaining halves from busy ones
+ * Renders produce an {@link IterationField}, turned into pixels afterwards by a {@link Colorizer}.
+ * An optional antialiasing pass then supersamples the pixels on the edges of the colored frame.
+ */
+public final class RenderEngine {
+
+    public static final int TILE_SIZE = 32; //small enough to balance, large enough to amortize the task overhead
+    private static final int MIN_SUBDIVISION = 4; //rectangles this thin are computed pixel by pixel
+    private static final int COLOR_ROWS = 16; //rows colored by a single task
+    private static final int EDGE_PIXELS = 16; //edge pixels supersampled by a single task, deep pixels can take long
+    private static final int LISTED_PIXELS = 256; //listed pixels computed by a single task
+
+    /**
+     * True when the JVM runs with --add-modules jdk.incubator.vector, otherwise only the scalar kernel can be used
+     */
+    public static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final ForkJoinPool pool;
+    private final RenderStats totals = new RenderStats(); //everything computed since the engine started
+    private volatile RenderMode mode = RenderMode.BRUTE_FORCE;
+    private volatile boolean bulbCheck = true; //see MandelUtil early outs
+    private volatile boolean periodicityCheck = true;
+    private volatile boolean vectorKernel = VECTOR_AVAILABLE;
+    private volatile TileCache tileCache; //null to compute every frame from scratch
+    private volatile Precision precision; //null to pick it from the pixel spacing of each view
+
+    public RenderEngine(int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    public RenderMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Picks how full resolution passes are computed, coarse passes are always brute force
+     * @param mode - mode used from the next pass on
+     */
+    public void setMode(RenderMode mode) {
+        this.mode = mode;
+    }
+
+    public boolean isBulbCheck() {
+        return bulbCheck;
+    }
+
+    /**
+     * Skips the main cardioid and period 2 bulb, only applied to mandelbrot views where Z0 = 0
+     * @param bulbCheck - true to enable from the next pass on
+     */
+    public void setBulbCheck(boolean bulbCheck) {
+        this.bulbCheck = bulbCheck;
+    }
+
+    public boolean isPeriodicityCheck() {
+        return periodicityCheck;
+    }
+
+    /**
+     * Stops iterating once a sequence cycles
+     * @param periodicityCheck - true to enable from the next pass on
+     */
+    public void setPeriodicityCheck(boolean periodicityCheck) {
+        this.periodicityCheck = periodicityCheck;
+    }
+
+    public boolean isVectorKernel() {
+        return vectorKernel;
+    }
+
+    /**
+     * Computes full resolution brute force passes with the SIMD kernel, several pixels of a row at once
+     * @param vectorKernel - true to enable from the next pass on, ignored when the vector module is not available
+     */
+    public void setVectorKernel(boolean vectorKernel) {
+        this.vectorKernel = vectorKernel && VECTOR_AVAILABLE;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Computes every view in the same number format instead of the narrowest one that resolves its pixels, see {@link Precision}
+     * Deep zoom views are always computed by perturbation.
+     * @param precision - format used from the next pass on, null to pick it from the pixel spacing of each view
+     */
+    public void setPrecision(Precision precision) {
+        if(precision == Precision.PERTURBATION)
+            throw new IllegalArgumentException("Perturbation needs a reference orbit, see ViewParams.deep");
+
+        this.precision = precision;
+    }
+
+    /**
+     * @param view - frame to render
+     * @return - number format the escape times of a fresh render of the view are computed in
+     */
+    public Precision getPrecision(ViewParams view) {
+        Precision forced = precision;
+
+        if(forced == null || view.getReference() != null)
+            return Precision.of(view);
+
+        return forced;
+    }
+
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    /**
+     * Keeps the iteration counts of full resolution tiles to reuse them in the next frames
+     * Only views whose grid origin sits on a whole pixel can reuse tiles, deep zooms and julia sets are never cached.
+     * @param tileCache - cache used from the next pass on, null to disable
+     */
+    public void setTileCache(TileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    /**
+     * @return - total number of pixels that went through the escape time algorithm since the engine started
+     */
+    public long getEvaluations() {
+        return totals.getEvaluations();
+    }
+
+    /**
+     * @return - iterations run since the engine started, see {@link RenderStats}
+     */
+    public long getIterations() {
+        return totals.getIterations();
+    }
+
+    /**
+     * @return - iterations the early outs saved since the engine started, see {@link RenderStats}
+     */
+    public long getSkippedIterations() {
+        return totals.getSkippedIterations();
+    }
+
+    /**
+     * Plots the pixel colors of a view with the original colors, blocking until every tile is done
+     * @param view - frame to render
+     * @param pixels - packed RGB pixels to plot, row by row with a stride of the view width
+     */
+    public void render(ViewParams view, int[] pixels) {
+        IterationField field = new IterationField(view.getWidth(), view.getHeight());
+
+        render(view, field, () -> false);
+        colorize(field, pixels, new Colorizer(Palette.RAINBOW, false, view.getIterationsMax()));
+    }
+
+    /**
+     * Computes the iteration field of a view, giving up as soon as the render is no longer wanted
+     * Cancellation is checked before every tile, so a stale frame stops within one tile per worker
+     * @param view - frame to render
+     * @param field - field of the view size to fill
+     * @param cancelled - true once the frame is stale
+     * @return - true if every tile was rendered
+     */
+    public boolean render(ViewParams view, IterationField field, BooleanSupplier cancelled) {
+        return render(view, field, 1, 0, cancelled, null);
+    }
+
+    /**
+     * Computes one pass of a progressive render
+     * Only one pixel out of step x step is computed and its count fills the whole block.
+     * Samples already computed by a coarser pass are kept as they are, so each pass only pays for the new ones.
+     * @param view - frame to render
+     * @param field - field of the view size to fill
+     * @param step - distance between two samples, a power of two up to the tile size
+     * @param previousStep - step of the last pass already in the field, 0 if there is none
+     * @param cancelled - true once the frame is stale
+     * @param stats - work done by this pass is added to it, null if not needed
+     * @return - true if every tile was rendered
+     */
+    public boolean render(ViewParams view, IterationField field, int step, int previousStep, BooleanSupplier cancelled, RenderStats stats) {
+        if(Integer.bitCount(step) != 1 || step > TILE_SIZE)
+            throw new IllegalArgumentException("Step must be a power of two up to " + TILE_SIZE + ": " + step);
+
+        return run(new Pass(this, view, field, step, previousStep, cancelled, step == 1 ? cacheFor(view) : null, null, stats));
+    }
+
+    /**
+     * Computes a view at full resolution, continuing the sequences where the last render of the same view stopped
+     * Only the pixels that did not escape before the previous iteration limit are iterated again, and only for the
+     * extra iterations. Any other change of the view starts the state over. Render modes and the SIMD kernel are not
+     * used since every pixel resumes from a different term, and the sequences are kept in doubles whatever the precision of the view.
+     * @param view - frame to render, deep zooms and views past the resolution of doubles cannot be resumed
+     * @param field - field of the view size to fill
+     * @param state - sequences of the previous render, updated for the next one
+     * @param cancelled - true once the frame is stale, the pixels done so far keep their progress
+     * @param stats - work done by this pass is added to it, null if not needed
+     * @return - true if every tile was rendered
+     */
+    public boolean resume(ViewParams view, IterationField field, EscapeState state, BooleanSupplier cancelled, RenderStats stats) {
+        if(getPrecision(view) == Precision.DOUBLE_DOUBLE)
+            throw new IllegalArgumentException("Views past the resolution of doubles cannot be resumed");
+
+        state.prepare(view);
+
+        return run(new Pass(this, view, field, 1, 0, cancelled, null, state, stats));
+    }
+
+    /**
+     * Computes only the listed pixels of a field, the others are left as they are
+     * For fields mostly filled another way, like frames reprojected from a previous render.
+     * The field takes the iteration limit of the view, like any render.
+     * @param view - frame to render
+     * @param field - field of the view size
+     * @param indices - pixel indices, y * width + x
+     * @param count - number of indices to compute, from the start of the array
+     * @param cancelled - true once the frame is stale
+     * @param stats - work done by this pass is added to it, null if not needed
+     * @return - true if every pixel was computed
+     */
+    public boolean render(ViewParams view, IterationField field, int[] indices, int count, BooleanSupplier cancelled, RenderStats stats) {
+        Pass pass = new Pass(this, view, field, 1, 0, cancelled, null, null, stats);
+
+        if(field.getWidth() != view.getWidth() || field.getHeight() != view.getHeight())
+            throw new IllegalArgumentException("View is " + view.getWidth() + "x" + view.getHeight()
+                    + ", field is " + field.getWidth() + "x" + field.getHeight());
+
+        field.setIterationsMax(view.getIterationsMax());
+        pool.invoke(new PixelTask(pass, indices, 0, count));
+
+        return !cancelled.getAsBoolean();
+    }
+
+    private boolean run(Pass pass) {
+        IterationField field = pass.field;
+
+        if(field.getWidth() != pass.view.getWidth() || field.getHeight() != pass.view.getHeight())
+            throw new IllegalArgumentException("View is " + pass.view.getWidth() + "x" + pass.view.getHeight()
+                    + ", field is " + field.getWidth() + "x" + field.getHeight());
+
+        field.setIterationsMax(pass.view.getIterationsMax());
+        pool.invoke(new TileTask(pass, 0, pass.tilesX * pass.tilesY));
+
+        return !pass.cancelled.getAsBoolean();
+    }
+
+    /**
+     * Colors a whole iteration field on the worker threads
+     * @param field - rendered field
+     * @param pixels - packed RGB pixels to plot, indexed like the field
+     * @param colorizer - palette, adjusted to the iteration limit of the field
+     */
+    public void colorize(IterationField field, int[] pixels, Colorizer colorizer) {
+        pool.invoke(new ColorTask(field, pixels, colorizer.forLimit(field.getIterationsMax()), 0, field.getHeight()));
+    }
+
+    /**
+     * Antialiases a colored frame by supersampling only the pixels on an edge
+     * A pixel is on an edge when its escape time differs from one of its 4 neighbours. Each edge pixel becomes the average
+     * color of grid x grid samples, one at a random place in each cell of the pixel: the cell of the pixel corner keeps
+     * the sample already in the field, so only the other cells are computed. When there are more edge pixels than
+     * the budget, the ones whose escape time differs the most from their neighbours are supersampled first.
+     * The jitter only depends on the pixel position on the grid, so it holds still while the view pans and strips of an image
+     * get the same samples as the whole image.
+     * @param view - frame rendered in the field
+     * @param field - iteration field of the frame, left as it is
+     * @param pixels - pixels colored from the field, edge pixels are overwritten
+     * @param colorizer - colors the pixels were colored with
+     * @param grid - cells per side of a pixel, grid x grid samples per edge pixel
+     * @param budget - maximum number of pixels supersampled
+     * @param cancelled - true once the frame is stale or out of time, the pixels done so far stay antialiased
+     * @param stats - work done by this pass is added to it, null if not needed
+     * @return - number of pixels supersampled, or to be supersampled if the pass was cancelled
+     */
+    public int antialias(ViewParams view, IterationField field, int[] pixels, Colorizer colorizer, int grid, int budget,
+                         BooleanSupplier cancelled, RenderStats stats) {
+        if(grid < 2)
+            throw new IllegalArgumentException("Antialiasing needs at least 2x2 samples per pixel: " + grid);
+
+        int[] edges = edges(field, budget);
+        Pass pass = new Pass(this, view, field, 1, 0, cancelled, null, null, stats);
+
+        pool.invoke(new EdgeTask(pass, edges, pixels, colorizer.forLimit(field.getIterationsMax()), grid, 0, edges.length));
+
+        return edges.length;
+    }
+
+    /**
+     * Picks the pixels to supersample, the ones with the highest contrast first
+     * Contrasts are sorted in powers of two: whole classes are taken from the highest down and the class that
+     * does not fit in the budget anymore is thinned out evenly over the frame.
+     * @param field - iteration field of the frame
+     * @param budget - maximum number of pixels
+     * @return - indices of the pixels, in the order of the field
+     */
+    private static int[] edges(IterationField field, int budget) {
+        int[] classes = new int[Integer.SIZE + 1];
+        int width = field.getWidth();
+        int size = width * field.getHeight();
+
+        for (int i = 0; i < size; i++)
+            classes[contrastClass(field, i, width)]++;
+
+        //lowest class taken whole, and how many pixels of the class below it still fit
+        int first = Integer.SIZE + 1;
+        int total = 0;
+
+        while (first > 1 && total + classes[first - 1] <= budget)
+            total += classes[--first];
+
+        int partial = first > 1 ? budget - total : 0;
+        int partialClass = first - 1;
+        int[] edges = new int[total + partial];
+        int taken = 0;
+        long seen = 0;
+
+        for (int i = 0; i < size && taken < edges.length; i++)
+        {
+            int contrast = contrastClass(field, i, width);
+
+            if(contrast >= first)
+            {
+                edges[taken++] = i;
+            }
+            else if(contrast == partialClass && partial > 0)
+            {
+                //keeps one pixel every time the running share of the class crosses a whole pixel
+                if((seen + 1) * partial / classes[partialClass] > seen * partial / classes[partialClass])
+                    edges[taken++] = i;
+
+                seen++;
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * @return - bit length of the largest escape time difference between a pixel and its 4 neighbours, 0 if there is none
+     */
+    private static int contrastClass(IterationField field, int index, int width) {
+        int[] counts = field.getCounts();
+        int count = counts[index];
+        int x = index % width;
+        int contrast = 0;
+
+        if(x > 0)
+            contrast = Math.max(contrast, Math.abs(count - counts[index - 1]));
+        if(x < width - 1)
+            contrast = Math.max(contrast, Math.abs(count - counts[index + 1]));
+        if(index >= width)
+            contrast = Math.max(contrast, Math.abs(count - counts[index - width]));
+        if(index + width < counts.length)
+            contrast = Math.max(contrast, Math.abs(count - counts[index + width]));
+
+        return Integer.SIZE - Integer.numberOfLeadingZeros(contrast);
+    }
+
+    /**
+     * Number of pixels a pass actually computes
+     * @param width - frame width
+     * @param height - frame height
+     * @param step - step of the pass
+     * @param previousStep - step of the pass before it, 0 if there is none
+     * @return - number of calls to the escape time algorithm
+     */
+    public static long sampleCount(int width, int height, int step, int previousStep) {
+        long samples = (long) ((width + step - 1) / step) * ((height + step - 1) / step);
+
+        if(previousStep != 0)
+            samples -= (long) ((width + previousStep - 1) / previousStep) * ((height + previousStep - 1) / previousStep);
+
+        return samples;
+    }
+
+    /**
+     * Number of pixels a pass of this engine will actually compute, leaving out the tiles already in the cache
+     * @param view - frame to render
+     * @param step - step of the pass
+     * @param previousStep - step of the pass before it, 0 if there is none
+     * @return - number of calls to the escape time algorithm
+     */
+    public long sampleCount(ViewParams view, int step, int previousStep) {
+        TileCache cache = step == 1 ? cacheFor(view) : null;
+
+        if(cache == null)
+            return sampleCount(view.getWidth(), view.getHeight(), step, previousStep);
+
+        int firstTileX = firstTile(view.getCenterX());
+        int firstTileY = firstTile(view.getCenterY());
+        int tilesX = tileCount(view.getCenterX(), view.getWidth());
+        int tilesY = tileCount(view.getCenterY(), view.getHeight());
+        RenderMode mode = this.mode;
+        Precision precision = getPrecision(view);
+        long samples = 0;
+
+        for (int y = 0; y < tilesY; y++)
+            for (int x = 0; x < tilesX; x++)
+                if(!cache.contains(new TileCache.Key(firstTileX + x, firstTileY + y, view, mode, precision)))
+                    samples += TILE_SIZE * TILE_SIZE;
+
+        return samples;
+    }
+
+    /**
+     * @param view - frame to render
+     * @return - true if the tiles of the view are looked up in the tile cache, julia and deep zoom views never are
+     */
+    public boolean usesTileCache(ViewParams view) {
+        return cacheFor(view) != null;
+    }
+
+    /**
+     * @return - the tile cache if the view can use it, otherwise null
+     */
+    private TileCache cacheFor(ViewParams view) {
+        TileCache cache = tileCache;
+
+        if(cache == null || view.getReference() != null || view.isJulia()) //C of a julia view changes at every drag
+            return null;
+
+        return onPixel(view.getCenterX()) && onPixel(view.getCenterY()) ? cache : null;
+    }
+
+    /**
+     * Grid anchored tiles only cover the same points from one frame to the next if the origin sits on a whole pixel
+     */
+    private static boolean onPixel(double center) {
+        return center == Math.rint(center) && Math.abs(center) < 1 << 30;
+    }
+
+    /**
+     * @param center - screen position of the grid origin
+     * @return - grid offset, in tiles, of the grid anchored tile under the first pixel
+     */
+    private static int firstTile(double center) {
+        return Math.floorDiv(-(int) center, TILE_SIZE);
+    }
+
+    /**
+     * @param center - screen position of the grid origin
+     * @param size - screen size along the same axis
+     * @return - number of grid anchored tiles needed to cover the screen
+     */
+    private static int tileCount(double center, int size) {
+        return Math.floorDiv(size - 1 - (int) center, TILE_SIZE) - firstTile(center) + 1;
+    }
+
+    /**
+     * Stops the worker threads
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Everything shared by the tiles of one pass
+     */
+    private static final class Pass {
+
+        private final RenderEngine engine;
+        private final RenderMode mode;
+        private final Precision precision;
+        private final ViewParams view;
+        private final IterationField field;
+        private final int step;
+        private final int previousStep;
+        private final BooleanSupplier cancelled;
+        private final boolean checkBulbs;
+        private final boolean checkPeriod;
+        private final boolean vector;
+        private final TileCache cache; //null when tiles are laid out on the screen instead of the grid
+        private final EscapeState state; //null unless the pass resumes the previous sequences
+        private final RenderStats stats; //null unless the caller counts the work of the pass
+
+        //tile layout, screen tiles start on the first pixel while grid anchored ones may stick out of the screen
+        private final int tilesX;
+        private final int tilesY;
+        private final int firstTileX; //grid offset of the first tile, in tiles
+        private final int firstTileY;
+        private final int originX; //screen position of the first tile
+        private final int originY;
+
+        Pass(RenderEngine engine, ViewParams view, IterationField field, int step, int previousStep, BooleanSupplier cancelled, TileCache cache,
+             EscapeState state, RenderStats stats) {
+            this.engine = engine;
+            this.mode = engine.mode;
+            this.precision = state != null ? Precision.DOUBLE : engine.getPrecision(view); //the state keeps doubles
+            this.view = view;
+            this.field = field;
+            this.step = step;
+            this.previousStep = previousStep;
+            this.cancelled = cancelled;
+            this.cache = cache;
+            this.state = state;
+            this.stats = stats;
+            //deep zooms only know the distance to the reference, and cycles cannot be told apart at that precision
+            boolean plain = view.getReference() == null;
+            checkBulbs = plain && !view.isJulia() && engine.bulbCheck && view.getZReal() == 0 && view.getZImaginary() == 0;
+            checkPeriod = plain && engine.periodicityCheck;
+            vector = plain && engine.vectorKernel && step == 1;
+
+            if(stats != null)
+                stats.setPrecision(precision);
+
+            if(cache == null)
+            {
+                tilesX = (view.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+                tilesY = (view.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+                firstTileX = 0;
+                firstTileY = 0;
+                originX = 0;
+                originY = 0;
+            }
+            else
+            {
+                tilesX = tileCount(view.getCenterX(), view.getWidth());
+                tilesY = tileCount(view.getCenterY(), view.getHeight());
+                firstTileX = firstTile(view.getCenterX());
+                firstTileY = firstTile(view.getCenterY());
+                originX = (int) view.getCenterX() + firstTileX * TILE_SIZE;
+                originY = (int) view.getCenterY() + firstTileY * TILE_SIZE;
+            }
+        }
+
+        /**
+         * @param evaluated - pixels computed by a tile
+         * @param escapeTimes - sum of their escape times
+         * @param skipped - part of the escape times the early outs did not run
+         */
+        void count(long evaluated, long escapeTimes, long skipped) {
+            engine.totals.add(evaluated, escapeTimes - skipped, skipped);
+
+            if(stats != null)
+                stats.add(evaluated, escapeTimes - skipped, skipped);
+        }
+
+        /**
+         * @param x - screen x, a fraction of a pixel further for points inside the pixel
+         * @param y - screen y
+         * @param skipped - iterations the early outs did not run are added to its first element
+         * @return - continuous escape time of the point, in the precision of the pass
+         */
+        double escapeTime(double x, double y, long[] skipped) {
+            double real = view.real(x);
+            double imaginary = view.imaginary(y);
+            int iterationsMax = view.getIterationsMax();
+
+            switch (precision)
+            {
+                case PERTURBATION:
+                    return view.getReference().smoothEscapeTime(real, imaginary, iterationsMax);
+                case FLOAT:
+                    if(view.isJulia())
+                        return FloatKernel.smoothEscapeTime((float) real, (float) imaginary, (float) view.getCReal(), (float) view.getCImaginary(),
+                                iterationsMax, false, checkPeriod, skipped);
+
+                    return FloatKernel.smoothEscapeTime((float) view.getZReal(), (float) view.getZImaginary(), (float) real, (float) imaginary,
+                            iterationsMax, checkBulbs, checkPeriod, skipped);
+                case DOUBLE_DOUBLE:
+                    double realLo = DoubleDoubleKernel.coordinateLo(x, view.getCenterX(), view.getZoom());
+                    double imaginaryLo = DoubleDoubleKernel.coordinateLo(y, view.getCenterY(), view.getZoom());
+
+                    if(view.isJulia())
+                        return DoubleDoubleKernel.smoothEscapeTime(real, realLo, imaginary, imaginaryLo, view.getCReal(), 0, view.getCImaginary(), 0,
+                                iterationsMax, false, checkPeriod, skipped);
+
+                    return DoubleDoubleKernel.smoothEscapeTime(view.getZReal(), 0, view.getZImaginary(), 0, real, realLo, imaginary, imaginaryLo,
+                            iterationsMax, checkBulbs, checkPeriod, skipped);
+                default:
+                    if(view.isJulia())
+                        return MandelUtil.smoothEscapeTime(real, imaginary, view.getCReal(), view.getCImaginary(), iterationsMax, false, checkPeriod,
+                                skipped);
+
+                    return MandelUtil.smoothEscapeTime(view.getZReal(), view.getZImaginary(), real, imaginary, iterationsMax, checkBulbs, checkPeriod,
+                            skipped);
+            }
+        }
+    }
+
+    /**
+     * Range of tiles, split in halves until a single tile is left
+     */
+    private static final class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pass pass;
+        private final int from;
+        private final int to;
+
+        TileTask(Pass pass, int from, int to) {
+            this.pass = pass;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (pass.cancelled.getAsBoolean())
+                return;
+
+            if (to - from == 1)
+            {
+                renderTile(from % pass.tilesX, from / pass.tilesX);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(pass, from, middle), new TileTask(pass, middle, to));
+        }
+
+        private void renderTile(int column, int row) {
+            int startX = pass.originX + column * TILE_SIZE;
+            int startY = pass.originY + row * TILE_SIZE;
+            int endX = Math.min(startX + TILE_SIZE, pass.view.getWidth());
+            int endY = Math.min(startY + TILE_SIZE, pass.view.getHeight());
+
+            if(pass.state != null)
+                renderResumed(startX, startY, endX, endY);
+            else if(pass.cache != null)
+                renderCached(pass.firstTileX + column, pass.firstTileY + row, startX, startY);
+            else if(pass.step == 1 && (pass.mode == RenderMode.SUBDIVISION || pass.vector))
+                copy(tile(startX, startY, endX - startX, endY - startY), startX, startY);
+            else
+                renderBlocks(startX, startY, endX, endY);
+        }
+
+        private void renderResumed(int startX, int startY, int endX, int endY) {
+            ViewParams view = pass.view;
+            EscapeState state = pass.state;
+            IterationField field = pass.field;
+            int width = view.getWidth();
+            int iterationsMax = view.getIterationsMax();
+            int evaluated = 0;
+            long escapeTimes = 0;
+            long skipped = 0;
+
+            for (int y = startY; y < endY; y++)
+            {
+                double imaginary = view.imaginary(y);
+
+                for (int x = startX; x < endX; x++)
+                {
+                    int index = y*width + x;
+
+                    if(!state.isPending(index, iterationsMax))
+                    {
+                        field.set(index, state.advance(index, view.real(x), imaginary, iterationsMax, pass.checkBulbs, pass.checkPeriod));
+                        continue;
+                    }
+
+                    int reached = state.reached(index);
+                    double smoothCount = state.advance(index, view.real(x), imaginary, iterationsMax, pass.checkBulbs, pass.checkPeriod);
+
+                    field.set(index, smoothCount);
+                    evaluated++;
+                    escapeTimes += (int) smoothCount - reached; //only the extra iterations
+                    skipped += (int) smoothCount - state.stopped(index);
+                }
+            }
+
+            pass.count(evaluated, escapeTimes, skipped);
+        }
+
+        /**
+         * Full resolution grid anchored tile, computed whole even where it sticks out of the screen so it can be reused
+         */
+        private void renderCached(int tileX, int tileY, int startX, int startY) {
+            TileCache.Key key = new TileCache.Key(tileX, tileY, pass.view, pass.mode, pass.precision);
+            IterationField tile = pass.cache.get(key);
+
+            if(tile == null)
+            {
+                tile = tile(startX, startY, TILE_SIZE, TILE_SIZE);
+                pass.cache.put(key, tile);
+            }
+
+            copy(tile, startX, startY);
+        }
+
+        /**
+         * Iteration field of a rectangle at full resolution
+         * @return - field of the rectangle size
+         */
+        private IterationField tile(int startX, int startY, int width, int height) {
+            if(pass.mode == RenderMode.SUBDIVISION)
+                return new Subdivision(pass, startX, startY, width, height).compute();
+
+            ViewParams view = pass.view;
+            IterationField tile = new IterationField(width, height);
+            long[] skipped = new long[1];
+
+            if(pass.vector && pass.precision == Precision.FLOAT)
+            {
+                float[] reals = new float[width];
+                double[] row = new double[width];
+
+                for (int x = 0; x < width; x++)
+                    reals[x] = (float) view.real(startX + x);
+
+                for (int y = 0; y < height; y++)
+                {
+                    float imaginary = (float) view.imaginary(startY + y);
+
+                    if(view.isJulia())
+                        VectorKernel.floatJuliaEscapeTime(reals, imaginary, (float) view.getCReal(), (float) view.getCImaginary(), row, width,
+                                view.getIterationsMax(), pass.checkPeriod, skipped);
+                    else
+                        VectorKernel.floatEscapeTime((float) view.getZReal(), (float) view.getZImaginary(), reals, imaginary, row, width,
+                                view.getIterationsMax(), pass.checkBulbs, pass.checkPeriod, skipped);
+
+                    for (int x = 0; x < width; x++)
+                        tile.set(y*width + x, row[x]);
+                }
+            }
+            else if(pass.vector && pass.precision == Precision.DOUBLE_DOUBLE)
+            {
+                double[] reals = new double[width];
+                double[] realsLo = new double[width];
+                double[] row = new double[width];
+                double fixedReal = view.isJulia() ? view.getCReal() : view.getZReal();
+                double fixedImaginary = view.isJulia() ? view.getCImaginary() : view.getZImaginary();
+
+                for (int x = 0; x < width; x++)
+                {
+                    reals[x] = view.real(startX + x);
+                    realsLo[x] = DoubleDoubleKernel.coordinateLo(startX + x, view.getCenterX(), view.getZoom());
+                }
+
+                for (int y = 0; y < height; y++)
+                {
+                    VectorKernel.doubleDoubleEscapeTime(view.isJulia(), reals, realsLo, view.imaginary(startY + y),
+                            DoubleDoubleKernel.coordinateLo(startY + y, view.getCenterY(), view.getZoom()), fixedReal, fixedImaginary,
+                            row, width, view.getIterationsMax(), pass.checkBulbs, pass.checkPeriod, skipped);
+
+                    for (int x = 0; x < width; x++)
+                        tile.set(y*width + x, row[x]);
+                }
+            }
+            else if(pass.vector)
+            {
+                double[] reals = new double[width];
+                double[] row = new double[width];
+
+                for (int x = 0; x < width; x++)
+                    reals[x] = view.real(startX + x);
+
+                //whole rows go through the vector lanes
+                for (int y = 0; y < height; y++)
+                {
+                    if(view.isJulia())
+                        VectorKernel.juliaEscapeTime(reals, view.imaginary(startY + y), view.getCReal(), view.getCImaginary(), row, width,
+                                view.getIterationsMax(), pass.checkPeriod, skipped);
+                    else
+                        VectorKernel.escapeTime(view.getZReal(), view.getZImaginary(), reals, view.imaginary(startY + y), row, width,
+                                view.getIterationsMax(), pass.checkBulbs, pass.checkPeriod, skipped);
+
+                    for (int x = 0; x < width; x++)
+                        tile.set(y*width + x, row[x]);
+                }
+            }
+            else
+            {
+                for (int y = 0; y < height; y++)
+                    for (int x = 0; x < width; x++)
+                        tile.set(y*width + x, pass.escapeTime(startX + x, startY + y, skipped));
+            }
+
+            long escapeTimes = 0;
+
+            for (int count : tile.getCounts())
+                escapeTimes += count;
+
+            pass.count((long) width * height, escapeTimes, skipped[0]);
+            return tile;
+        }
+
+        /**
+         * Copies the part of a tile that is on the screen
+         */
+        private void copy(IterationField tile, int startX, int startY) {
+            IterationField field = pass.field;
+            int width = field.getWidth();
+            int fromX = Math.max(startX, 0);
+            int toX = Math.min(startX + tile.getWidth(), width);
+            int toY = Math.min(startY + tile.getHeight(), field.getHeight());
+
+            for (int y = Math.max(startY, 0); y < toY; y++)
+            {
+                int source = (y - startY)*tile.getWidth() + fromX - startX;
+
+                System.arraycopy(tile.getCounts(), source, field.getCounts(), y*width + fromX, toX - fromX);
+                System.arraycopy(tile.getSmooth(), source, field.getSmooth(), y*width + fromX, toX - fromX);
+            }
+        }
+
+        private void renderBlocks(int startX, int startY, int endX, int endY) {
+            ViewParams view = pass.view;
+            int[] counts = pass.field.getCounts();
+            float[] smooth = pass.field.getSmooth();
+            int step = pass.step;
+            int previousStep = pass.previousStep;
+            int width = view.getWidth();
+            int evaluated = 0;
+            long escapeTimes = 0;
+            long[] skipped = new long[1];
+
+            for (int y = startY; y < endY; y += step)
+            {
+                boolean reusedRow = previousStep != 0 && y % previousStep == 0;
+                int blockHeight = Math.min(step, endY - y);
+
+                for (int x = startX; x < endX; x += step)
+                {
+                    if(reusedRow && x % previousStep == 0) //already computed by the coarser pass
+                        continue;
+
+                    double smoothCount = pass.escapeTime(x, y, skipped);
+                    int blockWidth = Math.min(step, endX - x);
+                    evaluated++;
+                    escapeTimes += (int) smoothCount;
+
+                    for (int row = y; row < y + blockHeight; row++)
+                    {
+                        Arrays.fill(counts, row*width + x, row*width + x + blockWidth, (int) smoothCount);
+                        Arrays.fill(smooth, row*width + x, row*width + x + blockWidth, (float) smoothCount);
+                    }
+                }
+            }
+
+            pass.count(evaluated, escapeTimes, skipped[0]);
+        }
+    }
+
+    /**
+     * Mariani-Silver subdivision of a single tile, see {@link RenderMode#SUBDIVISION}
+     * Iteration counts are kept per tile so the borders shared by two halves are only computed once.
+     * Filled rectangles get the whole count of their border, their continuous count has no fraction.
+     */
+    private static final class Subdivision {
+
+        private static final int UNKNOWN = -1;
+
+        private final Pass pass;
+        private final int startX;
+        private final int startY;
+        private final int width;
+        private final IterationField tile;
+        private final int[] counts;
+        private final long[] skipped = new long[1]; //iterations the early outs did not run
+        private int evaluated;
+        private long escapeTimes;
+
+        Subdivision(Pass pass, int startX, int startY, int width, int height) {
+            this.pass = pass;
+            this.startX = startX;
+            this.startY = startY;
+            this.width = width;
+            tile = new IterationField(width, height);
+            counts = tile.getCounts();
+            Arrays.fill(counts, UNKNOWN);
+        }
+
+        /**
+         * @return - iteration field of the tile
+         */
+        IterationField compute() {
+            subdivide(0, 0, width - 1, tile.getHeight() - 1);
+            pass.count(evaluated, escapeTimes, skipped[0]);
+            return tile;
+        }
+
+        /**
+         * Fills the rectangle with the iteration counts, bounds are inclusive and relative to the tile
+         */
+        private void subdivide(int left, int top, int right, int bottom) {
+            int border = count(left, top);
+            boolean uniform = true;
+
+            for (int x = left; x <= right; x++)
+            {
+                uniform &= count(x, top) == border;
+                uniform &= count(x, bottom) == border;
+            }
+            for (int y = top + 1; y < bottom; y++)
+            {
+                uniform &= count(left, y) == border;
+                uniform &= count(right, y) == border;
+            }
+
+            if(uniform)
+            {
+                for (int y = top + 1; y < bottom; y++)
+                {
+                    Arrays.fill(counts, y*width + left + 1, y*width + right, border);
+                    Arrays.fill(tile.getSmooth(), y*width + left + 1, y*width + right, border);
+                }
+            }
+            else if(right - left < MIN_SUBDIVISION || bottom - top < MIN_SUBDIVISION)
+            {
+                for (int y = top + 1; y < bottom; y++)
+                    for (int x = left + 1; x < right; x++)
+                        count(x, y);
+            }
+            else if(right - left >= bottom - top)
+            {
+                int middle = (left + right) >>> 1;
+                subdivide(left, top, middle, bottom);
+                subdivide(middle, top, right, bottom);
+            }
+            else
+            {
+                int middle = (top + bottom) >>> 1;
+                subdivide(left, top, right, middle);
+                subdivide(left, middle, right, bottom);
+            }
+        }
+
+        private int count(int x, int y) {
+            int index = y*width + x;
+
+            if(counts[index] == UNKNOWN)
+            {
+                tile.set(index, pass.escapeTime(startX + x, startY + y, skipped));
+                evaluated++;
+                escapeTimes += counts[index];
+            }
+
+            return counts[index];
+        }
+    }
+
+    /**
+     * Range of listed pixels, split in halves until a few hundred pixels are left
+     */
+    private static final class PixelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pass pass;
+        private final int[] indices;
+        private final int from;
+        private final int to;
+
+        PixelTask(Pass pass, int[] indices, int from, int to) {
+            this.pass = pass;
+            this.indices = indices;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(pass.cancelled.getAsBoolean())
+                return;
+
+            if (to - from <= LISTED_PIXELS)
+            {
+                IterationField field = pass.field;
+                int width = field.getWidth();
+                long escapeTimes = 0;
+                long[] skipped = new long[1];
+
+                for (int i = from; i < to; i++)
+                {
+                    int index = indices[i];
+                    field.set(index, pass.escapeTime(index % width, index / width, skipped));
+                    escapeTimes += field.getCounts()[index];
+                }
+
+                pass.count(to - from, escapeTimes, skipped[0]);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new PixelTask(pass, indices, from, middle), new PixelTask(pass, indices, middle, to));
+        }
+    }
+
+    /**
+     * Range of edge pixels to supersample, split in halves until a few pixels are left
+     */
+    private static final class EdgeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Pass pass;
+        private final int[] edges;
+        private final int[] pixels;
+        private final Colorizer colorizer;
+        private final int grid;
+        private final int from;
+        private final int to;
+
+        EdgeTask(Pass pass, int[] edges, int[] pixels, Colorizer colorizer, int grid, int from, int to) {
+            this.pass = pass;
+            this.edges = edges;
+            this.pixels = pixels;
+            this.colorizer = colorizer;
+            this.grid = grid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(pass.cancelled.getAsBoolean())
+                return;
+
+            if (to - from <= EDGE_PIXELS)
+            {
+                supersample();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new EdgeTask(pass, edges, pixels, colorizer, grid, from, middle), new EdgeTask(pass, edges, pixels, colorizer, grid, middle, to));
+        }
+
+        private void supersample() {
+            int width = pass.field.getWidth();
+            int samples = grid * grid;
+            long escapeTimes = 0;
+            long[] skipped = new long[1];
+
+            for (int e = from; e < to; e++)
+            {
+                int index = edges[e];
+                int x = index % width;
+                int y = index / width;
+                long seed = (Math.round(x - pass.view.getCenterX()) * 0x100000001B3L + Math.round(y - pass.view.getCenterY())) * samples;
+                int color = pixels[index]; //cell of the pixel corner, already computed
+                int red = color >> 16 & 0xFF;
+                int green = color >> 8 & 0xFF;
+                int blue = color & 0xFF;
+
+                for (int cell = 1; cell < samples; cell++)
+                {
+                    long random = mix(seed + cell);
+                    double u = (cell % grid + (random >>> 40) * 0x1p-24) / grid;
+                    double v = (cell / grid + (random >>> 11 & 0xFFFFFF) * 0x1p-24) / grid;
+                    double smoothCount = pass.escapeTime(x + u, y + v, skipped);
+
+                    color = colorizer.color((int) smoothCount, (float) smoothCount);
+                    red += color >> 16 & 0xFF;
+                    green += color >> 8 & 0xFF;
+                    blue += color & 0xFF;
+                    escapeTimes += (int) smoothCount;
+                }
+
+                pixels[index] = (red + samples /2) / samples << 16 | (green + samples /2) / samples << 8 | (blue + samples /2) / samples;
+            }
+
+            pass.count((long) (to - from) * (samples - 1), escapeTimes, skipped[0]);
+        }
+
+        /**
+         * SplitMix64 finalizer, spreads consecutive seeds over the whole range
+         */
+        private static long mix(long seed) {
+            long z = seed * 0x9E3779B97F4A7C15L;
+            z = (z ^ z >>> 30) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ z >>> 27) * 0x94D049BB133111EBL;
+            return z ^ z >>> 31;
+        }
+    }
+
+    /**
+     * Band of rows to color, split in halves until a few rows are left
+     */
+    private static final class ColorTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IterationField field;
+        private final int[] pixels;
+        private final Colorizer colorizer;
+        private final int from; //first row
+        private final int to;
+
+        ColorTask(IterationField field, int[] pixels, Colorizer colorizer, int from, int to) {
+            this.field = field;
+            this.pixels = pixels;
+            this.colorizer = colorizer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= COLOR_ROWS)
+            {
+                colorizer.colorize(field, pixels, from * field.getWidth(), to * field.getWidth());
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ColorTask(field, pixels, colorizer, from, middle), new ColorTask(field, pixels, colorizer, middle, to));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.gmarshall.mandelbrot.render;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Where the time of a view goes, for tuning the iteration limit and the thread count of a workstation
+ * Frame figures are those of the last full resolution frame of an {@link AsyncRenderer}, engine figures are shared by
+ * every view of the engine. Tile cache figures are those of the cache of the engine while the frames of this view go
+ * through it, zero otherwise: julia views never do, so the julia metrics do not repeat the figures of the main view.
+ * Readable on screen, through JMX once registered, and each frame is also recorded as a {@link FrameEvent} when a
+ * flight recording is running.
+ */
+public final class RenderMetrics implements RenderMetricsMBean {
+
+    private final RenderEngine engine;
+    private final AsyncRenderer renderer;
+
+    //written by the render thread
+    private volatile long frames;
+    private volatile long lastPlot; //nanoseconds spent in the passes of the last frame
+    private volatile long averagePlot;
+    private volatile long lastEvaluations;
+    private volatile long lastIterations;
+    private volatile long lastSkipped;
+    private volatile double insideFraction;
+    private volatile Precision precision;
+    private volatile boolean cached; //the last frame was looked up in the tile cache
+
+    //written by the painting thread
+    private volatile long lastPaint; //nanoseconds
+    private volatile long averagePaint;
+
+    RenderMetrics(RenderEngine engine, AsyncRenderer renderer) {
+        this.engine = engine;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Publishes the metrics in the platform MBean server as com.gmarshall.mandelbrot:type=RenderMetrics,name=[name]
+     * @param name - name of the view
+     */
+    public void register(String name) {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.gmarshall.mandelbrot:type=RenderMetrics,name=" + name));
+        }
+        catch (JMException e)
+        {
+            throw new IllegalStateException("Cannot register the render metrics of " + name, e);
+        }
+    }
+
+    /**
+     * Records a full resolution frame
+     * @param plot - nanoseconds spent in its passes
+     * @param stats - work done by its passes
+     * @param insideFraction - share of its pixels that reached the iteration limit
+     * @param cached - true if its tiles were looked up in the tile cache
+     */
+    void frameRendered(long plot, RenderStats stats, double insideFraction, boolean cached) {
+        lastPlot = plot;
+        averagePlot = averagePlot == 0 ? plot : (averagePlot * 7 + plot) / 8;
+        lastEvaluations = stats.getEvaluations();
+        lastIterations = stats.getIterations();
+        lastSkipped = stats.getSkippedIterations();
+        this.insideFraction = insideFraction;
+        precision = stats.getPrecision();
+        this.cached = cached;
+        frames++;
+    }
+
+    /**
+     * Records the time the screen took to draw the view, only the painting thread may call this
+     * @param paint - nanoseconds
+     */
+    public void painted(long paint) {
+        lastPaint = paint;
+        averagePaint = averagePaint == 0 ? paint : (averagePaint * 7 + paint) / 8;
+    }
+
+    @Override
+    public long getFrames() {
+        return frames;
+    }
+
+    @Override
+    public double getLastPlotMillis() {
+        return lastPlot / 1e6;
+    }
+
+    @Override
+    public double getAveragePlotMillis() {
+        return averagePlot / 1e6;
+    }
+
+    @Override
+    public double getLastPaintMillis() {
+        return lastPaint / 1e6;
+    }
+
+    @Override
+    public double getAveragePaintMillis() {
+        return averagePaint / 1e6;
+    }
+
+    @Override
+    public double getFrameLatencyMillis() {
+        return renderer.getAverageLatencyMillis();
+    }
+
+    /**
+     * @return - pixels computed per second of plot time during the last frame
+     */
+    @Override
+    public double getPixelsPerSecond() {
+        long plot = lastPlot;
+        return plot == 0 ? 0 : lastEvaluations * 1e9 / plot;
+    }
+
+    @Override
+    public long getLastFrameEvaluations() {
+        return lastEvaluations;
+    }
+
+    /**
+     * @return - iterations run for the last frame, see {@link RenderStats}
+     */
+    @Override
+    public long getLastFrameIterations() {
+        return lastIterations;
+    }
+
+    /**
+     * @return - iterations the early outs saved on the last frame, see {@link RenderStats}
+     */
+    @Override
+    public long getLastFrameSkippedIterations() {
+        return lastSkipped;
+    }
+
+    /**
+     * @return - share of the pixels of the last frame that reached the iteration limit, from 0 to 1
+     */
+    @Override
+    public double getInsideFraction() {
+        return insideFraction;
+    }
+
+    /**
+     * @return - number format the last frame was computed in, see {@link Precision}, empty before the first frame
+     */
+    @Override
+    public String getPrecision() {
+        Precision last = precision;
+        return last == null ? "" : last.toString();
+    }
+
+    @Override
+    public long getTotalEvaluations() {
+        return engine.getEvaluations();
+    }
+
+    @Override
+    public long getTotalIterations() {
+        return engine.getIterations();
+    }
+
+    @Override
+    public long getTotalSkippedIterations() {
+        return engine.getSkippedIterations();
+    }
+
+    @Override
+    public int getThreads() {
+        return engine.getThreads();
+    }
+
+    /**
+     * @return - cache of the engine if the last frame went through it, otherwise null
+     */
+    private TileCache tileCache() {
+        return cached ? engine.getTileCache() : null;
+    }
+
+    @Override
+    public int getTileCacheSize() {
+        TileCache cache = tileCache();
+        return cache == null ? 0 : cache.getSize();
+    }
+
+    @Override
+    public long getTileCacheBytes() {
+        TileCache cache = tileCache();
+        return cache == null ? 0 : cache.getUsedBytes();
+    }
+
+    @Override
+    public long getTileCacheHits() {
+        TileCache cache = tileCache();
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    @Override
+    public long getTileCacheMisses() {
+        TileCache cache = tileCache();
+        return cache == null ? 0 : cache.getMisses();
+    }
+
+    @Override
+    public long getTileCacheEvictions() {
+        TileCache cache = tileCache();
+        return cache == null ? 0 : cache.getEvictions();
+    }
+}
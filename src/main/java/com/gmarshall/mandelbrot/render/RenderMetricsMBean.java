@@ -0,0 +1,49 @@
+package com.gmarshall.mandelbrot.render;
+
+/**
+ * Management interface of {@link RenderMetrics}, every getter is an attribute readable from JConsole or Mission Control
+ */
+public interface RenderMetricsMBean {
+
+    long getFrames();
+
+    double getLastPlotMillis();
+
+    double getAveragePlotMillis();
+
+    double getLastPaintMillis();
+
+    double getAveragePaintMillis();
+
+    double getFrameLatencyMillis();
+
+    double getPixelsPerSecond();
+
+    long getLastFrameEvaluations();
+
+    long getLastFrameIterations();
+
+    long getLastFrameSkippedIterations();
+
+    double getInsideFraction();
+
+    String getPrecision();
+
+    long getTotalEvaluations();
+
+    long getTotalIterations();
+
+    long getTotalSkippedIterations();
+
+    int getThreads();
+
+    int getTileCacheSize();
+
+    long getTileCacheBytes();
+
+    long getTileCacheHits();
+
+    long getTileCacheMisses();
+
+    long getTileCacheEvictions();
+}
@@ -0,0 +1,19 @@
+package com.gmarshall.mandelbrot.render;
+
+/**
+ * How the render engine decides which pixels go through the escape time algorithm
+ */
+public enum RenderMode {
+
+    /**
+     * Every pixel is computed
+     */
+    BRUTE_FORCE,
+
+    /**
+     * Mariani-Silver subdivision: only the borders of a rectangle are computed, if they all share the same iteration count
+     * the inside is filled with it, otherwise the rectangle is split in two and each half is checked the same way.
+     * Relies on the set being connected, which only holds for Z0 = 0, so it may miss details for other starting points.
+     */
+    SUBDIVISION
+}
@@ -0,0 +1,58 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work done by the render engine, added once per tile so counting costs nothing next to the tiles
+ *
+ * - Evaluations are the pixels that went through the escape time algorithm, tiles read from the cache are free
+ * - Iterations are the terms of their sequences actually computed: a pixel proven inside the set by an early out
+ *   counts the iterations run until then, nothing for the bulbs
+ * - Skipped iterations are the ones the early outs saved, added to the iterations they give the sum of the escape times,
+ *   what the pixels would cost without the early outs
+ */
+public final class RenderStats {
+
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder iterations = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile Precision precision;
+
+    void add(long evaluations, long iterations, long skipped) {
+        this.evaluations.add(evaluations);
+        this.iterations.add(iterations);
+        this.skipped.add(skipped);
+    }
+
+    void setPrecision(Precision precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * @return - number of pixels computed
+     */
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return - iterations run for the pixels computed
+     */
+    public long getIterations() {
+        return iterations.sum();
+    }
+
+    /**
+     * @return - iterations the early outs proved unnecessary for the pixels computed
+     */
+    public long getSkippedIterations() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return - number format of the last pass, null before the first one
+     */
+    public Precision getPrecision() {
+        return precision;
+    }
+}
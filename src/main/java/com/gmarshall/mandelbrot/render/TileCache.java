@@ -0,0 +1,172 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Iteration counts of the tiles already rendered, so panning and going back to a previous view do not recompute them
+ * Tiles are anchored on the grid rather than on the screen: a tile covers the same points of the plane whatever the pan,
+ * so after a pan only the strips that came into view are missing.
+ * Iteration fields are kept instead of colors, the coloring is cheap and can change without invalidating anything.
+ * The least recently used tiles are evicted once the memory budget is exceeded.
+ */
+public final class TileCache {
+
+    private static final int ENTRY_OVERHEAD = 128; //map entry, key, field and array headers, in bytes
+
+    private final long budget;
+    private final LinkedHashMap<Key, IterationField> tiles = new LinkedHashMap<>(256, 0.75f, true); //iteration order is LRU first
+    private long used; //guarded by this
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param budget - memory the tiles may take, in bytes
+     */
+    public TileCache(long budget) {
+        if(budget <= 0)
+            throw new IllegalArgumentException("Budget must be positive: " + budget);
+
+        this.budget = budget;
+    }
+
+    /**
+     * @param key - tile to look for
+     * @return - iteration field of the tile, null if it is not cached
+     */
+    synchronized IterationField get(Key key) {
+        IterationField tile = tiles.get(key);
+
+        if(tile == null)
+            misses.increment();
+        else
+            hits.increment();
+
+        return tile;
+    }
+
+    /**
+     * Same as {@link #get} without updating the statistics nor the eviction order
+     */
+    synchronized boolean contains(Key key) {
+        return tiles.containsKey(key);
+    }
+
+    /**
+     * Stores the iteration field of a tile, evicting the least recently used ones if the budget is exceeded
+     * @param key - tile
+     * @param tile - iteration field of the tile, must not be modified afterwards
+     */
+    synchronized void put(Key key, IterationField tile) {
+        IterationField previous = tiles.put(key, tile);
+
+        if(previous != null)
+            used -= size(previous);
+
+        used += size(tile);
+
+        Iterator<Map.Entry<Key, IterationField>> eldest = tiles.entrySet().iterator();
+
+        while (used > budget && eldest.hasNext())
+        {
+            used -= size(eldest.next().getValue());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops every tile, the statistics are kept
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        used = 0;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return - memory taken by the cached fields, in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    public synchronized int getSize() {
+        return tiles.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static long size(IterationField tile) {
+        return 8L * tile.getWidth() * tile.getHeight() + ENTRY_OVERHEAD; //an int and a float per pixel
+    }
+
+    /**
+     * Identifies the counts of a tile: its position on the grid and every parameter the counts depend on
+     */
+    static final class Key {
+
+        private final int tileX; //grid offset of the tile, in tiles
+        private final int tileY;
+        private final double zoom;
+        private final double zReal;
+        private final double zImaginary;
+        private final int iterationsMax;
+        private final RenderMode mode; //subdivision may guess a few counts differently
+        private final Precision precision; //so does a rounding of another size
+
+        Key(int tileX, int tileY, ViewParams view, RenderMode mode, Precision precision) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            zoom = view.getZoom();
+            zReal = view.getZReal();
+            zImaginary = view.getZImaginary();
+            iterationsMax = view.getIterationsMax();
+            this.mode = mode;
+            this.precision = precision;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Key))
+                return false;
+
+            Key key = (Key) o;
+
+            return tileX == key.tileX && tileY == key.tileY && iterationsMax == key.iterationsMax && mode == key.mode && precision == key.precision
+                    && Double.compare(zoom, key.zoom) == 0
+                    && Double.compare(zReal, key.zReal) == 0
+                    && Double.compare(zImaginary, key.zImaginary) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = tileX;
+            hash = 31*hash + tileY;
+            hash = 31*hash + Double.hashCode(zoom);
+            hash = 31*hash + Double.hashCode(zReal);
+            hash = 31*hash + Double.hashCode(zImaginary);
+            hash = 31*hash + iterationsMax;
+            hash = 31*hash + mode.hashCode();
+            return 31*hash + precision.hashCode();
+        }
+    }
+}
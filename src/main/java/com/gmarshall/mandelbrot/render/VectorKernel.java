@@ -0,0 +1,442 @@
+package com.gmarshall.mandelbrot.render;
+
+import com.gmarshall.mandelbrot.util.MandelUtil;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Escape time algorithm on several pixels at once with the Java Vector API
+ * Each lane holds one pixel of a row, lanes that escape are masked out and the group stops when no lane is left.
+ * Gives exactly the same counts as {@link MandelUtil#smoothEscapeTime(double, double, double, double, int, boolean, boolean)},
+ * as {@link FloatKernel} with float lanes, twice as many of them, or as {@link DoubleDoubleKernel} with pairs of double lanes.
+ *
+ * The API is an incubator module: this class can only be loaded when the JVM runs with
+ * --add-modules jdk.incubator.vector, check {@link RenderEngine#VECTOR_AVAILABLE} before touching it.
+ */
+final class VectorKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final double PERIOD_EPSILON = 1e-14;
+
+    private VectorKernel() {
+    }
+
+    /**
+     * @return - number of pixels computed together
+     */
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Computes the escape time of consecutive pixels of a row
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReals - real part of each pixel
+     * @param cImaginary - imaginary part shared by the row
+     * @param counts - continuous escape time of each pixel
+     * @param length - number of pixels
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @param skipped - iterations the early outs did not run are added to its first element, null if not counted
+     */
+    static void escapeTime(double zReal, double zImaginary, double[] cReals, double cImaginary, double[] counts, int length,
+                           int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        int i = 0;
+
+        for (; i <= length - SPECIES.length(); i += SPECIES.length())
+            escapeTime(false, cReals, i, cImaginary, zReal, zImaginary, counts, iterationMax, checkBulbs, checkPeriod, skipped);
+
+        for (; i < length; i++) //tail shorter than a vector
+            counts[i] = MandelUtil.smoothEscapeTime(zReal, zImaginary, cReals[i], cImaginary, iterationMax, checkBulbs, checkPeriod, skipped);
+    }
+
+    /**
+     * Computes the escape time of consecutive pixels of a row of a julia set
+     * Gives exactly the same counts as {@link MandelUtil#smoothEscapeTime(double, double, double, double, int, boolean, boolean)}
+     * with the pixels as Z0.
+     * @param zReals - real part of Z0 of each pixel
+     * @param zImaginary - imaginary part of Z0 shared by the row
+     * @param cReal - real part of C
+     * @param cImaginary - imaginary part of C
+     * @param counts - continuous escape time of each pixel
+     * @param length - number of pixels
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @param skipped - iterations the early outs did not run are added to its first element, null if not counted
+     */
+    static void juliaEscapeTime(double[] zReals, double zImaginary, double cReal, double cImaginary, double[] counts, int length,
+                                int iterationMax, boolean checkPeriod, long[] skipped) {
+        int i = 0;
+
+        for (; i <= length - SPECIES.length(); i += SPECIES.length())
+            escapeTime(true, zReals, i, zImaginary, cReal, cImaginary, counts, iterationMax, false, checkPeriod, skipped);
+
+        for (; i < length; i++) //tail shorter than a vector
+            counts[i] = MandelUtil.smoothEscapeTime(zReals[i], zImaginary, cReal, cImaginary, iterationMax, false, checkPeriod, skipped);
+    }
+
+    /**
+     * Same as {@link #escapeTime(double, double, double[], double, double[], int, int, boolean, boolean, long[])} in floats
+     */
+    static void floatEscapeTime(float zReal, float zImaginary, float[] cReals, float cImaginary, double[] counts, int length,
+                                int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        int i = 0;
+
+        for (; i <= length - FLOAT_SPECIES.length(); i += FLOAT_SPECIES.length())
+            floatEscapeTime(false, cReals, i, cImaginary, zReal, zImaginary, counts, iterationMax, checkBulbs, checkPeriod, skipped);
+
+        for (; i < length; i++)
+            counts[i] = FloatKernel.smoothEscapeTime(zReal, zImaginary, cReals[i], cImaginary, iterationMax, checkBulbs, checkPeriod, skipped);
+    }
+
+    /**
+     * Same as {@link #juliaEscapeTime(double[], double, double, double, double[], int, int, boolean, long[])} in floats
+     */
+    static void floatJuliaEscapeTime(float[] zReals, float zImaginary, float cReal, float cImaginary, double[] counts, int length,
+                                     int iterationMax, boolean checkPeriod, long[] skipped) {
+        int i = 0;
+
+        for (; i <= length - FLOAT_SPECIES.length(); i += FLOAT_SPECIES.length())
+            floatEscapeTime(true, zReals, i, zImaginary, cReal, cImaginary, counts, iterationMax, false, checkPeriod, skipped);
+
+        for (; i < length; i++)
+            counts[i] = FloatKernel.smoothEscapeTime(zReals[i], zImaginary, cReal, cImaginary, iterationMax, false, checkPeriod, skipped);
+    }
+
+    /**
+     * Same as {@link #escapeTime(double, double, double[], double, double[], int, int, boolean, boolean, long[])} in double-doubles,
+     * for mandelbrot views or, with julia, for julia views
+     * @param julia - true if the pixels are Z0 and the fixed point is C
+     * @param reals - high part of the real part of each pixel
+     * @param realsLo - its low part
+     * @param imaginary - high part of the imaginary part shared by the row
+     * @param imaginaryLo - its low part
+     * @param fixedReal - real part of the point shared by every pixel
+     * @param fixedImaginary - imaginary part of the point shared by every pixel
+     */
+    static void doubleDoubleEscapeTime(boolean julia, double[] reals, double[] realsLo, double imaginary, double imaginaryLo,
+                                       double fixedReal, double fixedImaginary, double[] counts, int length,
+                                       int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        int i = 0;
+
+        for (; i <= length - SPECIES.length(); i += SPECIES.length())
+            doubleDoubleEscapeTime(julia, reals, realsLo, i, imaginary, imaginaryLo, fixedReal, fixedImaginary, counts, iterationMax,
+                    checkBulbs, checkPeriod, skipped);
+
+        for (; i < length; i++)
+        {
+            if(julia)
+                counts[i] = DoubleDoubleKernel.smoothEscapeTime(reals[i], realsLo[i], imaginary, imaginaryLo, fixedReal, 0, fixedImaginary, 0,
+                        iterationMax, false, checkPeriod, skipped);
+            else
+                counts[i] = DoubleDoubleKernel.smoothEscapeTime(fixedReal, 0, fixedImaginary, 0, reals[i], realsLo[i], imaginary, imaginaryLo,
+                        iterationMax, checkBulbs, checkPeriod, skipped);
+        }
+    }
+
+    /**
+     * @param julia - true if the pixels are Z0 and the fixed point is C, false if the pixels are C and the fixed point is Z0
+     * @param reals - real part of each pixel
+     * @param offset - pixel of the first lane
+     * @param imaginary - imaginary part shared by the row
+     * @param fixedReal - real part of the point shared by every pixel
+     * @param fixedImaginary - imaginary part of the point shared by every pixel
+     */
+    private static void escapeTime(boolean julia, double[] reals, int offset, double imaginary, double fixedReal, double fixedImaginary,
+                                   double[] counts, int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        DoubleVector pixel = DoubleVector.fromArray(SPECIES, reals, offset);
+        DoubleVector cr = julia ? DoubleVector.broadcast(SPECIES, fixedReal) : pixel;
+        DoubleVector ci = DoubleVector.broadcast(SPECIES, julia ? fixedImaginary : imaginary);
+        DoubleVector limit = DoubleVector.broadcast(SPECIES, iterationMax);
+        DoubleVector count = DoubleVector.zero(SPECIES);
+        DoubleVector modulus = DoubleVector.zero(SPECIES); //x² + y² of the escaping term
+        VectorMask<Double> active = SPECIES.maskAll(true);
+
+        if(checkBulbs)
+        {
+            VectorMask<Double> inside = bulbs(cr, imaginary);
+            count = count.blend(limit, inside);
+            active = active.andNot(inside);
+            skip(inside.trueCount(), iterationMax, skipped);
+        }
+
+        //Z1
+        DoubleVector x = julia ? pixel.mul(pixel).sub(imaginary*imaginary).add(cr) : cr.add(fixedReal*fixedReal - fixedImaginary*fixedImaginary);
+        DoubleVector y = julia ? pixel.mul(2*imaginary).add(ci) : ci.add(2*fixedReal*fixedImaginary);
+        DoubleVector cycleX = x;
+        DoubleVector cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
+
+        for (int n = 0; n < iterationMax && active.anyTrue(); n++)
+        {
+            DoubleVector x2 = x.mul(x);
+            DoubleVector y2 = y.mul(y);
+
+            DoubleVector magnitude = x2.add(y2);
+            VectorMask<Double> escaped = magnitude.compare(VectorOperators.GT, 4).and(active); //x² + y² > 4
+
+            if(escaped.anyTrue()) //rare, most iterations leave every lane running
+            {
+                modulus = modulus.blend(magnitude, escaped);
+                active = active.andNot(escaped);
+            }
+            count = count.add(1, active);
+
+            //escaped lanes keep iterating but are never counted again
+            y = x.mul(y).mul(2).add(ci);
+            x = x2.sub(y2).add(cr);
+
+            if(checkPeriod)
+            {
+                VectorMask<Double> cycled = x.sub(cycleX).abs().add(y.sub(cycleY).abs()).compare(VectorOperators.LT, PERIOD_EPSILON).and(active);
+
+                if(cycled.anyTrue())
+                {
+                    count = count.blend(limit, cycled);
+                    active = active.andNot(cycled);
+                    skip(cycled.trueCount(), iterationMax - n - 1, skipped);
+                }
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleY = y;
+                }
+            }
+        }
+
+        for (int lane = 0; lane < SPECIES.length(); lane++)
+        {
+            int escapeTime = (int) count.lane(lane);
+            counts[offset + lane] = escapeTime == iterationMax ? iterationMax : MandelUtil.smoothCount(escapeTime, modulus.lane(lane));
+        }
+    }
+
+    /**
+     * Counts the iterations lanes proven bounded will not run
+     * @param lanes - number of lanes proven bounded
+     * @param left - iterations each of them had left
+     * @param skipped - the iterations are added to its first element, null if not counted
+     */
+    private static void skip(int lanes, int left, long[] skipped) {
+        if(skipped != null)
+            skipped[0] += (long) lanes * left;
+    }
+
+    /**
+     * @return - lanes inside the main cardioid or the period 2 bulb
+     */
+    private static VectorMask<Double> bulbs(DoubleVector cr, double cImaginary) {
+        double y2 = cImaginary*cImaginary;
+        DoubleVector shifted = cr.sub(0.25);
+        DoubleVector q = shifted.mul(shifted).add(y2);
+        VectorMask<Double> cardioid = q.mul(q.add(shifted)).compare(VectorOperators.LE, 0.25*y2);
+        DoubleVector left = cr.add(1);
+
+        return cardioid.or(left.mul(left).add(y2).compare(VectorOperators.LE, 0.0625));
+    }
+
+    /**
+     * Same as {@link #escapeTime(boolean, double[], int, double, double, double, double[], int, boolean, boolean, long[])} in floats
+     */
+    private static void floatEscapeTime(boolean julia, float[] reals, int offset, float imaginary, float fixedReal, float fixedImaginary,
+                                        double[] counts, int iterationMax, boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        FloatVector pixel = FloatVector.fromArray(FLOAT_SPECIES, reals, offset);
+        FloatVector cr = julia ? FloatVector.broadcast(FLOAT_SPECIES, fixedReal) : pixel;
+        FloatVector ci = FloatVector.broadcast(FLOAT_SPECIES, julia ? fixedImaginary : imaginary);
+        FloatVector limit = FloatVector.broadcast(FLOAT_SPECIES, iterationMax); //exact, float views stay below 2^24 iterations
+        FloatVector count = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector modulus = FloatVector.zero(FLOAT_SPECIES);
+        VectorMask<Float> active = FLOAT_SPECIES.maskAll(true);
+
+        if(checkBulbs)
+        {
+            VectorMask<Float> inside = floatBulbs(cr, imaginary);
+            count = count.blend(limit, inside);
+            active = active.andNot(inside);
+            skip(inside.trueCount(), iterationMax, skipped);
+        }
+
+        FloatVector x = julia ? pixel.mul(pixel).sub(imaginary*imaginary).add(cr) : cr.add(fixedReal*fixedReal - fixedImaginary*fixedImaginary);
+        FloatVector y = julia ? pixel.mul(2*imaginary).add(ci) : ci.add(2*fixedReal*fixedImaginary);
+        FloatVector cycleX = x;
+        FloatVector cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
+
+        for (int n = 0; n < iterationMax && active.anyTrue(); n++)
+        {
+            FloatVector x2 = x.mul(x);
+            FloatVector y2 = y.mul(y);
+
+            FloatVector magnitude = x2.add(y2);
+            VectorMask<Float> escaped = magnitude.compare(VectorOperators.GT, 4).and(active);
+
+            if(escaped.anyTrue())
+            {
+                modulus = modulus.blend(magnitude, escaped);
+                active = active.andNot(escaped);
+            }
+            count = count.add(1, active);
+
+            y = x.mul(y).mul(2).add(ci);
+            x = x2.sub(y2).add(cr);
+
+            if(checkPeriod)
+            {
+                VectorMask<Float> cycled = x.sub(cycleX).abs().add(y.sub(cycleY).abs()).compare(VectorOperators.LT, FloatKernel.PERIOD_EPSILON).and(active);
+
+                if(cycled.anyTrue())
+                {
+                    count = count.blend(limit, cycled);
+                    active = active.andNot(cycled);
+                    skip(cycled.trueCount(), iterationMax - n - 1, skipped);
+                }
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleY = y;
+                }
+            }
+        }
+
+        for (int lane = 0; lane < FLOAT_SPECIES.length(); lane++)
+        {
+            int escapeTime = (int) count.lane(lane);
+            counts[offset + lane] = escapeTime == iterationMax ? iterationMax : MandelUtil.smoothCount(escapeTime, modulus.lane(lane));
+        }
+    }
+
+    /**
+     * @return - float lanes inside the main cardioid or the period 2 bulb
+     */
+    private static VectorMask<Float> floatBulbs(FloatVector cr, float cImaginary) {
+        float y2 = cImaginary*cImaginary;
+        FloatVector shifted = cr.sub(0.25f);
+        FloatVector q = shifted.mul(shifted).add(y2);
+        VectorMask<Float> cardioid = q.mul(q.add(shifted)).compare(VectorOperators.LE, 0.25f*y2);
+        FloatVector left = cr.add(1);
+
+        return cardioid.or(left.mul(left).add(y2).compare(VectorOperators.LE, 0.0625f));
+    }
+
+    /**
+     * Same as {@link DoubleDoubleKernel#smoothEscapeTime}, every value a pair of vectors
+     */
+    private static void doubleDoubleEscapeTime(boolean julia, double[] reals, double[] realsLo, int offset, double imaginary, double imaginaryLo,
+                                               double fixedReal, double fixedImaginary, double[] counts, int iterationMax,
+                                               boolean checkBulbs, boolean checkPeriod, long[] skipped) {
+        DoubleVector pixel = DoubleVector.fromArray(SPECIES, reals, offset);
+        DoubleVector pixelLo = DoubleVector.fromArray(SPECIES, realsLo, offset);
+        DoubleVector zero = DoubleVector.zero(SPECIES);
+        DoubleVector cr = julia ? DoubleVector.broadcast(SPECIES, fixedReal) : pixel;
+        DoubleVector crLo = julia ? zero : pixelLo;
+        DoubleVector ci = DoubleVector.broadcast(SPECIES, julia ? fixedImaginary : imaginary);
+        DoubleVector ciLo = DoubleVector.broadcast(SPECIES, julia ? 0 : imaginaryLo);
+        DoubleVector limit = DoubleVector.broadcast(SPECIES, iterationMax);
+        DoubleVector count = zero;
+        DoubleVector modulus = zero;
+        VectorMask<Double> active = SPECIES.maskAll(true);
+
+        if(checkBulbs)
+        {
+            VectorMask<Double> inside = bulbs(cr, imaginary);
+            count = count.blend(limit, inside);
+            active = active.andNot(inside);
+            skip(inside.trueCount(), iterationMax, skipped);
+        }
+
+        DoubleVector x = julia ? pixel : DoubleVector.broadcast(SPECIES, fixedReal);
+        DoubleVector xLo = julia ? pixelLo : zero;
+        DoubleVector y = DoubleVector.broadcast(SPECIES, julia ? imaginary : fixedImaginary);
+        DoubleVector yLo = julia ? DoubleVector.broadcast(SPECIES, imaginaryLo) : zero;
+        DoubleVector cycleX = DoubleVector.broadcast(SPECIES, Double.NaN);
+        DoubleVector cycleXLo = zero;
+        DoubleVector cycleY = cycleX;
+        DoubleVector cycleYLo = zero;
+        int window = 1;
+        int sinceCheck = 0;
+
+        for (int n = -1; n < iterationMax && active.anyTrue(); n++) //the first round turns Z0 into Z1
+        {
+            DoubleVector x2 = x.mul(x);
+            DoubleVector x2Lo = x.fma(x, x2.neg()).add(x.mul(2).mul(xLo));
+            DoubleVector y2 = y.mul(y);
+            DoubleVector y2Lo = y.fma(y, y2.neg()).add(y.mul(2).mul(yLo));
+
+            if(n >= 0)
+            {
+                DoubleVector magnitude = x2.add(y2);
+                VectorMask<Double> escaped = magnitude.compare(VectorOperators.GT, 4).and(active);
+
+                if(escaped.anyTrue())
+                {
+                    modulus = modulus.blend(magnitude, escaped);
+                    active = active.andNot(escaped);
+                }
+                count = count.add(1, active);
+            }
+
+            DoubleVector xy = x.mul(2).mul(y);
+            DoubleVector xyLo = x.fma(y, x.mul(y).neg()).add(x.mul(yLo)).add(xLo.mul(y)).mul(2);
+            DoubleVector sum = xy.add(ci);
+            DoubleVector rounding = sum.sub(xy);
+            DoubleVector error = xy.sub(sum.sub(rounding)).add(ci.sub(rounding)).add(xyLo).add(ciLo);
+            y = sum.add(error);
+            yLo = error.sub(y.sub(sum));
+
+            DoubleVector difference = x2.sub(y2);
+            rounding = difference.sub(x2);
+            error = x2.sub(difference.sub(rounding)).add(y2.neg().sub(rounding)).add(x2Lo).sub(y2Lo);
+            DoubleVector differenceHi = difference.add(error);
+            DoubleVector differenceLo = error.sub(differenceHi.sub(difference));
+            sum = differenceHi.add(cr);
+            rounding = sum.sub(differenceHi);
+            error = differenceHi.sub(sum.sub(rounding)).add(cr.sub(rounding)).add(differenceLo).add(crLo);
+            x = sum.add(error);
+            xLo = error.sub(x.sub(sum));
+
+            if(checkPeriod)
+            {
+                DoubleVector distance = x.sub(cycleX).add(xLo.sub(cycleXLo)).abs().add(y.sub(cycleY).add(yLo.sub(cycleYLo)).abs());
+                VectorMask<Double> cycled = distance.compare(VectorOperators.LT, DoubleDoubleKernel.PERIOD_EPSILON).and(active);
+
+                if(cycled.anyTrue())
+                {
+                    count = count.blend(limit, cycled);
+                    active = active.andNot(cycled);
+                    skip(cycled.trueCount(), iterationMax - n - 1, skipped);
+                }
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleXLo = xLo;
+                    cycleY = y;
+                    cycleYLo = yLo;
+                }
+            }
+        }
+
+        for (int lane = 0; lane < SPECIES.length(); lane++)
+        {
+            int escapeTime = (int) count.lane(lane);
+            counts[offset + lane] = escapeTime == iterationMax ? iterationMax : MandelUtil.smoothCount(escapeTime, modulus.lane(lane));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.gmarshall.mandelbrot.render;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable snapshot of everything needed to render one frame
+ * Render workers only ever read from this, so the screen state can keep changing while a frame is being computed
+ */
+public final class ViewParams {
+
+    public static final double DEEP_ZOOM = 1e12; //pixels per unit from which views are rendered by perturbation instead of a plain kernel
+
+    private final int width;
+    private final int height;
+    private final double centerX; //screen position of the grid origin
+    private final double centerY;
+    private final double zoom; //pixels per grid unit
+    private final double zReal; //Z0 of the sequence
+    private final double zImaginary;
+    private final int iterationsMax;
+    private final ReferenceOrbit reference; //deep zoom, null for plain double precision
+    private final boolean julia; //the point under a pixel is Z0 instead of C
+    private final double cReal; //C shared by every pixel of a julia view
+    private final double cImaginary;
+
+    public ViewParams(int width, int height, double centerX, double centerY, double zoom, double zReal, double zImaginary, int iterationsMax) {
+        this(width, height, centerX, centerY, zoom, zReal, zImaginary, iterationsMax, null);
+    }
+
+    /**
+     * Parameters of a deep zoom view, the center is the screen position of the reference point instead of the grid origin
+     * and pixel coordinates are distances to that point
+     */
+    public ViewParams(int width, int height, double centerX, double centerY, double zoom, double zReal, double zImaginary, int iterationsMax,
+                      ReferenceOrbit reference) {
+        this(width, height, centerX, centerY, zoom, zReal, zImaginary, iterationsMax, reference, false, 0, 0);
+    }
+
+    private ViewParams(int width, int height, double centerX, double centerY, double zoom, double zReal, double zImaginary, int iterationsMax,
+                       ReferenceOrbit reference, boolean julia, double cReal, double cImaginary) {
+        this.width = width;
+        this.height = height;
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.zoom = zoom;
+        this.zReal = zReal;
+        this.zImaginary = zImaginary;
+        this.iterationsMax = iterationsMax;
+        this.reference = reference;
+        this.julia = julia;
+        this.cReal = cReal;
+        this.cImaginary = cImaginary;
+    }
+
+    /**
+     * Parameters of a julia set view, the point under a pixel is Z0 and every pixel iterates with the same C
+     * @param cReal - real part of C
+     * @param cImaginary - imaginary part of C
+     * @return - view of the julia set of C
+     */
+    public static ViewParams julia(int width, int height, double centerX, double centerY, double zoom, double cReal, double cImaginary,
+                                   int iterationsMax) {
+        return new ViewParams(width, height, centerX, centerY, zoom, 0, 0, iterationsMax, null, true, cReal, cImaginary);
+    }
+
+    /**
+     * Builds the parameters of an image centered on a grid point
+     * The screen renders with the imaginary axis going down (screen rows) and a mirrored Z0,
+     * which gives the same counts as the usual orientation, so the same is done here to match it pixel for pixel.
+     * @param width - image width
+     * @param height - image height
+     * @param real - real part of the center
+     * @param imaginary - imaginary part of the center
+     * @param zoom - pixels per grid unit
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param iterations - iteration limit
+     * @return - parameters of the whole image
+     */
+    public static ViewParams centered(int width, int height, double real, double imaginary, double zoom,
+                                      double zReal, double zImaginary, int iterations) {
+        return new ViewParams(width, height, width /2.0 - real * zoom, height /2.0 + imaginary * zoom, zoom,
+                zReal, -zImaginary, iterations);
+    }
+
+    /**
+     * Same as {@link #centered(int, int, double, double, double, double, double, int)} for a center with any number of digits,
+     * rendered as a perturbation of the center from {@link #DEEP_ZOOM}
+     * @param width - image width
+     * @param height - image height
+     * @param real - real part of the center
+     * @param imaginary - imaginary part of the center
+     * @param zoom - pixels per grid unit
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param iterations - iteration limit
+     * @return - parameters of the whole image
+     */
+    public static ViewParams centered(int width, int height, BigDecimal real, BigDecimal imaginary, double zoom,
+                                      double zReal, double zImaginary, int iterations) {
+        return zoom < DEEP_ZOOM
+                ? centered(width, height, real.doubleValue(), imaginary.doubleValue(), zoom, zReal, zImaginary, iterations)
+                : deep(width, height, real, imaginary, zoom, zReal, zImaginary, iterations);
+    }
+
+    /**
+     * Same as {@link #centered(int, int, double, double, double, double, double, int)} for zooms past the precision of doubles,
+     * rendered as a perturbation of the center whose reference orbit is computed here
+     * @param width - image width
+     * @param height - image height
+     * @param real - real part of the center
+     * @param imaginary - imaginary part of the center
+     * @param zoom - pixels per grid unit
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param iterations - iteration limit
+     * @return - parameters of the whole image, pixel coordinates are distances to the center
+     */
+    public static ViewParams deep(int width, int height, BigDecimal real, BigDecimal imaginary, double zoom,
+                                  double zReal, double zImaginary, int iterations) {
+        ReferenceOrbit reference = ReferenceOrbit.compute(real, imaginary.negate(), zReal, -zImaginary, iterations,
+                ReferenceOrbit.digitsFor(zoom, Math.max(width, height)));
+
+        return new ViewParams(width, height, width /2.0, height /2.0, zoom, zReal, -zImaginary, iterations, reference);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getCenterX() {
+        return centerX;
+    }
+
+    public double getCenterY() {
+        return centerY;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    public double getZReal() {
+        return zReal;
+    }
+
+    public double getZImaginary() {
+        return zImaginary;
+    }
+
+    public int getIterationsMax() {
+        return iterationsMax;
+    }
+
+    public ReferenceOrbit getReference() {
+        return reference;
+    }
+
+    public boolean isJulia() {
+        return julia;
+    }
+
+    public double getCReal() {
+        return cReal;
+    }
+
+    public double getCImaginary() {
+        return cImaginary;
+    }
+
+    /**
+     * @param x - first column of the region
+     * @param y - first row of the region
+     * @param width - region width
+     * @param height - region height
+     * @return - parameters of a rectangle of this view, as a view of its own
+     */
+    public ViewParams region(int x, int y, int width, int height) {
+        return new ViewParams(width, height, centerX - x, centerY - y, zoom, zReal, zImaginary, iterationsMax, reference, julia, cReal, cImaginary);
+    }
+
+    /**
+     * Grid coordinate of a pixel column
+     * @param x - screen x, a fraction of a pixel further for points inside the pixel
+     * @return - real part of the point under the pixel (C, or Z0 for julia views), or its distance to the reference point for deep zooms
+     */
+    public double real(double x) {
+        return (x - centerX) / zoom;
+    }
+
+    /**
+     * Grid coordinate of a pixel row
+     * @param y - screen y, a fraction of a pixel further for points inside the pixel
+     * @return - imaginary part of the point under the pixel (C, or Z0 for julia views), or its distance to the reference point for deep zooms
+     */
+    public double imaginary(double y) {
+        return (y - centerY) / zoom;
+    }
+
+    /**
+     * @param other - another view
+     * @return - true if both views plot the same sequences on the same pixels, whatever their iteration limits
+     */
+    public boolean samePlane(ViewParams other) {
+        return other != null && reference == null && other.reference == null
+                && width == other.width && height == other.height
+                && centerX == other.centerX && centerY == other.centerY && zoom == other.zoom
+                && zReal == other.zReal && zImaginary == other.zImaginary
+                && julia == other.julia && cReal == other.cReal && cImaginary == other.cImaginary;
+    }
+}
@@ -0,0 +1,161 @@
+package com.gmarshall.mandelbrot.server;
+
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.util.Options;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the tile server
+ * A number of clients request random tiles of one level as fast as they can, then the latency percentiles of the served
+ * and of the rejected requests, the throughput and the response codes are printed. Drawing from few distinct tiles exercises the coalescing
+ * of identical requests, many clients with a low render limit exercise the backpressure.
+ *
+ * Without --url a server is started in the same JVM on a free port and its counters are printed too.
+ *
+ * Usage: TileLoadTest [--url http://host:port] [--clients 32] [--requests 2000] [--level 6] [--tiles 64]
+ *                     [--iterations 256] [--renders 4 x cores]
+ */
+public final class TileLoadTest {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options = Options.parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "32"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+        int level = Integer.parseInt(options.getOrDefault("level", "6"));
+        int tiles = Integer.parseInt(options.getOrDefault("tiles", "64"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "256"));
+        int cores = Runtime.getRuntime().availableProcessors();
+        TileServer server = null;
+        String url = options.get("url");
+
+        if(url == null)
+        {
+            server = new TileServer(0, 64, 256, Integer.parseInt(options.getOrDefault("renders", String.valueOf(cores * 4))),
+                    new RenderEngine(cores));
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+        long[] okLatencies = new long[requests]; //a 503 comes back right away, mixing them would hide the render times
+        long[] overloadedLatencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger overloaded = new AtomicInteger();
+        LongAdder errors = new LongAdder();
+        long[] candidates = candidates(level, tiles);
+        String base = url;
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+
+        for (int c = 0; c < clients; c++)
+        {
+            int seed = c;
+
+            pool.execute(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                int i;
+
+                while ((i = next.getAndIncrement()) < requests)
+                {
+                    long tile = candidates[random.nextInt(candidates.length)];
+                    URI uri = URI.create(base + "/tile/" + level + "/" + (tile >>> 32) + "/" + (int) tile + ".png?iterations=" + iterations);
+                    long sent = System.nanoTime();
+
+                    try
+                    {
+                        int status = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        long latency = System.nanoTime() - sent;
+
+                        if(status == 200)
+                            okLatencies[ok.getAndIncrement()] = latency;
+                        else if(status == 503)
+                            overloadedLatencies[overloaded.getAndIncrement()] = latency;
+                        else
+                            errors.increment();
+                    }
+                    catch (IOException e)
+                    {
+                        errors.increment();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%d requests, %d clients, %d distinct tiles of level %d, %d iterations%n", requests, clients, candidates.length, level, iterations);
+        System.out.printf("throughput %.1f requests/s%n", requests / (elapsed / 1e9));
+        printLatencies("200", okLatencies, ok.get());
+        printLatencies("503", overloadedLatencies, overloaded.get());
+        System.out.printf("200=%d 503=%d errors=%d%n", ok.get(), overloaded.get(), errors.sum());
+
+        if(server != null)
+        {
+            System.out.print(client.send(HttpRequest.newBuilder(URI.create(url + "/stats")).build(), HttpResponse.BodyHandlers.ofString()).body());
+            server.stop();
+        }
+
+        System.exit(0); //the client executor threads are not daemons
+    }
+
+    /**
+     * @return - distinct tiles of the level packed as x << 32 | y, taken around the middle of the level where the set is
+     */
+    private static long[] candidates(int level, int tiles) {
+        int side = (int) Math.min(1L << level, (long) Math.ceil(Math.sqrt(tiles)));
+        long first = ((1L << level) - side) / 2;
+        long[] candidates = new long[Math.min(tiles, side * side)];
+
+        for (int i = 0; i < candidates.length; i++)
+            candidates[i] = (first + i % side) << 32 | (first + i / side);
+
+        return candidates;
+    }
+
+    /**
+     * Prints the latency percentiles of the requests answered with one status
+     * @param status - status of the requests
+     * @param latencies - latencies of the requests in nanoseconds, the first count are used
+     * @param count - number of requests answered with this status
+     */
+    private static void printLatencies(String status, long[] latencies, int count) {
+        if(count == 0)
+            return;
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("%s latency p50=%.1f ms p90=%.1f ms p99=%.1f ms max=%.1f ms%n", status, percentile(sorted, 50), percentile(sorted, 90),
+                percentile(sorted, 99), sorted[count - 1] / 1e6);
+    }
+
+    /**
+     * @return - latency under which the given percentage of the sorted requests fall, in milliseconds
+     */
+    private static double percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,408 @@
+package com.gmarshall.mandelbrot.server;
+
+import com.gmarshall.mandelbrot.io.PngStreamWriter;
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import com.gmarshall.mandelbrot.util.Options;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves tiles of the mandelbrot set over HTTP, in the usual web map layout
+ * GET /tile/{z}/{x}/{y}.png returns a 256x256 PNG. Level z splits the square from -2.5 - 2i to 1.5 + 2i in 2^z x 2^z tiles,
+ * x going right and y going down. Past {@link ViewParams#DEEP_ZOOM} tiles are rendered by perturbation.
+ *
+ * Query parameters, all optional:
+ *   iterations=n        iteration limit (default 256)
+ *   z0=re,im            starting point of the sequence (default 0,0)
+ *   palette=name        rainbow, fire, ocean or grayscale (default rainbow)
+ *   smooth=true|false   continuous coloring (default false)
+ *
+ * GET /stats returns the request counters as plain text.
+ *
+ * Threads:
+ * - Requests are handled by a fixed pool of threads with a bounded queue, virtual threads need Java 21 and this targets 17.
+ *   Once the queue is full tile requests get a 503 right away from a separate overflow thread, so the accepting thread
+ *   never renders and /stats still answers under load.
+ * - Tiles are computed on the render engine pool, sized for the cores, request threads only wait for them.
+ * - Requests for a tile already being rendered wait for that render instead of starting another one.
+ * - At most a fixed number of distinct tiles are rendered or waiting for the engine, beyond that requests get a 503 right away.
+ *
+ * Usage: TileServer [--port 8080] [--threads 64] [--queue 256] [--renders 32]
+ */
+public final class TileServer {
+
+    public static final int TILE_SIZE = 256;
+    private static final double WORLD_SIZE = 4; //grid units covered by level 0
+    private static final BigDecimal WORLD_LEFT = new BigDecimal("-2.5");
+    private static final BigDecimal WORLD_TOP = new BigDecimal("2");
+    private static final int MAX_LEVEL = 60;
+    private static final int MAX_ITERATIONS = 100_000;
+
+    private final RenderEngine engine;
+    private final HttpServer server;
+    private final ThreadPoolExecutor requests;
+    private final ThreadPoolExecutor overflow; //turns down the requests finding the request queue full
+    private final Semaphore renders; //distinct tiles allowed in the render engine at once
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Binds the server, call {@link #start()} to accept requests
+     * @param port - port to listen to, 0 for any free port
+     * @param threads - request threads
+     * @param queue - requests waiting for a thread before tile requests are rejected
+     * @param maxRenders - distinct tiles rendered or waiting for the engine before requests are rejected
+     * @param engine - engine computing the tiles, shut down with the server
+     * @throws IOException - if the port cannot be bound
+     */
+    public TileServer(int port, int threads, int queue, int maxRenders, RenderEngine engine) throws IOException {
+        this.engine = engine;
+        renders = new Semaphore(maxRenders);
+
+        AtomicInteger count = new AtomicInteger();
+        overflow = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), OverflowThread::new);
+        requests = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), task -> {
+            Thread thread = new Thread(task, "tile-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (task, executor) -> overflow.execute(task)); //only reads the request and answers, never renders
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(requests);
+        server.createContext("/tile/", this::handleTile);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        Map<String, String> options = Options.parse(args);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        TileServer server = new TileServer(Integer.parseInt(options.getOrDefault("port", "8080")),
+                Integer.parseInt(options.getOrDefault("threads", "64")),
+                Integer.parseInt(options.getOrDefault("queue", "256")),
+                Integer.parseInt(options.getOrDefault("renders", String.valueOf(cores * 4))),
+                new RenderEngine(cores));
+
+        server.start();
+        System.out.println("Serving tiles on http://localhost:" + server.getPort() + "/tile/{z}/{x}/{y}.png");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the ones in progress and shuts the engine down
+     */
+    public void stop() {
+        server.stop(1);
+        requests.shutdown();
+        overflow.shutdown();
+        engine.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @param level - zoom level, the world is 2^level tiles wide
+     * @param x - tile column
+     * @param y - tile row
+     * @param iterations - iteration limit
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @return - parameters of the tile
+     */
+    public static ViewParams tileView(int level, long x, long y, int iterations, double zReal, double zImaginary) {
+        double zoom = TILE_SIZE * Math.pow(2, level) / WORLD_SIZE;
+        BigDecimal span = BigDecimal.valueOf(WORLD_SIZE).divide(BigDecimal.valueOf(2).pow(level)); //exact, a power of two
+        BigDecimal half = new BigDecimal("0.5");
+        BigDecimal real = WORLD_LEFT.add(span.multiply(BigDecimal.valueOf(x).add(half)));
+        BigDecimal imaginary = WORLD_TOP.subtract(span.multiply(BigDecimal.valueOf(y).add(half)));
+
+        return ViewParams.centered(TILE_SIZE, TILE_SIZE, real, imaginary, zoom, zReal, zImaginary, iterations);
+    }
+
+    private void handleTile(HttpExchange exchange) throws IOException {
+        try (exchange)
+        {
+            served.increment();
+
+            if(Thread.currentThread() instanceof OverflowThread)
+            {
+                reject(exchange);
+                return;
+            }
+
+            TileRequest tile;
+
+            try
+            {
+                tile = TileRequest.parse(exchange.getRequestURI());
+            }
+            catch (IllegalArgumentException e)
+            {
+                send(exchange, 400, "text/plain", (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            byte[] png;
+
+            try
+            {
+                png = tile(tile);
+            }
+            catch (OverloadedException e)
+            {
+                reject(exchange);
+                return;
+            }
+            catch (ExecutionException | RuntimeException e)
+            {
+                failed.increment();
+                send(exchange, 500, "text/plain", (e + "\n").getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=86400"); //a tile never changes
+            send(exchange, 200, "image/png", png);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange)
+        {
+            String stats = String.format("served %d%nrendered %d%ncoalesced %d%nrejected %d%nfailed %d%nin flight %d%nqueued %d%n",
+                    served.sum(), rendered.sum(), coalesced.sum(), rejected.sum(), failed.sum(), inFlight.size(), requests.getQueue().size());
+
+            send(exchange, 200, "text/plain", stats.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Renders a tile, or waits for the render of the same tile already in progress
+     * @return - PNG of the tile
+     */
+    private byte[] tile(TileRequest tile) throws ExecutionException, InterruptedException, OverloadedException {
+        CompletableFuture<byte[]> render = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(tile.key, render);
+
+        if(existing != null)
+        {
+            coalesced.increment();
+
+            try
+            {
+                return existing.get();
+            }
+            catch (ExecutionException e)
+            {
+                if(e.getCause() instanceof OverloadedException) //joined a request that was turned down
+                    throw new OverloadedException();
+
+                throw e;
+            }
+        }
+
+        if(!renders.tryAcquire())
+        {
+            inFlight.remove(tile.key, render);
+            render.completeExceptionally(new OverloadedException());
+            throw new OverloadedException();
+        }
+
+        try
+        {
+            render.complete(render(tile));
+            rendered.increment();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            render.completeExceptionally(e);
+        }
+        finally
+        {
+            inFlight.remove(tile.key, render);
+            renders.release();
+        }
+
+        return render.get();
+    }
+
+    private byte[] render(TileRequest tile) throws IOException {
+        ViewParams view = tileView(tile.level, tile.x, tile.y, tile.iterations, tile.zReal, tile.zImaginary);
+        IterationField field = new IterationField(TILE_SIZE, TILE_SIZE);
+        int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+
+        engine.render(view, field, () -> false);
+        engine.colorize(field, pixels, new Colorizer(tile.palette, tile.smooth, tile.iterations));
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream(1 << 15);
+
+        try (PngStreamWriter writer = new PngStreamWriter(png, TILE_SIZE, TILE_SIZE))
+        {
+            writer.writeRows(pixels, TILE_SIZE);
+        }
+
+        return png.toByteArray();
+    }
+
+    /**
+     * Answers a 503 asking the client to retry in a second
+     */
+    private void reject(HttpExchange exchange) throws IOException {
+        rejected.increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        send(exchange, 503, "text/plain", "Overloaded, retry later\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody())
+        {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Parameters of a tile request, two requests with the same key get the same image
+     */
+    private static final class TileRequest {
+
+        private final int level;
+        private final long x;
+        private final long y;
+        private final int iterations;
+        private final double zReal;
+        private final double zImaginary;
+        private final Palette palette;
+        private final boolean smooth;
+        private final String key;
+
+        private TileRequest(int level, long x, long y, int iterations, double zReal, double zImaginary, Palette palette, boolean smooth) {
+            this.level = level;
+            this.x = x;
+            this.y = y;
+            this.iterations = iterations;
+            this.zReal = zReal;
+            this.zImaginary = zImaginary;
+            this.palette = palette;
+            this.smooth = smooth;
+            key = level + "/" + x + "/" + y + "/" + iterations + "/" + zReal + "," + zImaginary + "/" + palette + "/" + smooth;
+        }
+
+        /**
+         * @param uri - /tile/{z}/{x}/{y}.png with an optional query
+         * @return - parsed request
+         * @throws IllegalArgumentException - if the path or a parameter is invalid
+         */
+        static TileRequest parse(URI uri) {
+            String[] path = uri.getPath().split("/");
+
+            if(path.length != 5 || !path[1].equals("tile"))
+                throw new IllegalArgumentException("Expected /tile/{z}/{x}/{y}.png, got " + uri.getPath());
+
+            Map<String, String> query = new HashMap<>();
+
+            if(uri.getQuery() != null)
+            {
+                for (String parameter : uri.getQuery().split("&"))
+                {
+                    int equals = parameter.indexOf('=');
+
+                    if(equals > 0)
+                        query.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+                }
+            }
+
+            try
+            {
+                int level = Integer.parseInt(path[2]);
+                long x = Long.parseLong(path[3]);
+                long y = Long.parseLong(path[4].endsWith(".png") ? path[4].substring(0, path[4].length() - 4) : path[4]);
+                int iterations = Integer.parseInt(query.getOrDefault("iterations", "256"));
+                String[] z0 = query.getOrDefault("z0", "0,0").split(",");
+
+                if(level < 0 || level > MAX_LEVEL)
+                    throw new IllegalArgumentException("Level must be between 0 and " + MAX_LEVEL + ": " + level);
+                if(x < 0 || y < 0 || x >= 1L << level || y >= 1L << level)
+                    throw new IllegalArgumentException("Tile " + x + "/" + y + " is outside level " + level);
+                if(iterations < 1 || iterations > MAX_ITERATIONS)
+                    throw new IllegalArgumentException("Iterations must be between 1 and " + MAX_ITERATIONS + ": " + iterations);
+                if(z0.length != 2)
+                    throw new IllegalArgumentException("Expected z0=re,im, got " + String.join(",", z0));
+
+                return new TileRequest(level, x, y, iterations, Double.parseDouble(z0[0]), Double.parseDouble(z0[1]),
+                        Palette.parse(query.getOrDefault("palette", "rainbow")),
+                        Boolean.parseBoolean(query.getOrDefault("smooth", "false")));
+            }
+            catch (NumberFormatException e)
+            {
+                throw new IllegalArgumentException("Invalid number: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Thread answering the requests finding the request queue full
+     */
+    private static final class OverflowThread extends Thread {
+
+        OverflowThread(Runnable task) {
+            super(task, "tile-overflow");
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * Too many distinct tiles are already being rendered
+     */
+    private static final class OverloadedException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        OverloadedException() {
+            super("Overloaded", null, false, false);
+        }
+    }
+}
@@ -25,6 +25,19 @@ package com.gmarshall.mandelbrot.util;
  */
 public final class MandelUtil {
 
+    private static final double PERIOD_EPSILON = 1e-14; //two terms this close are considered the same point of a cycle
+    private static final double LOG2_E = 1 / Math.log(2);
+    private static final int FRACTION_STEPS = 256;
+    private static final double[] FRACTIONS = new double[FRACTION_STEPS + 1]; //fraction of the continuous count for x² + y² from 4 to 16
+
+    static {
+        for (int i = 0; i <= FRACTION_STEPS; i++)
+        {
+            double modulus = 4 + 12.0 * i / FRACTION_STEPS;
+            FRACTIONS[i] = 2 - Math.log(Math.log(modulus) * LOG2_E) * LOG2_E; //1 - log2(log2|Zn|) with |Zn|² = modulus
+        }
+    }
+
     /**
      * Generates the next complex number in the sequence following this rule:
      * Zn <- complex number (x1+iy1)
@@ -52,7 +65,6 @@ public final class MandelUtil {
      * */
 
     /**
-     * /**
      * Checks if the value of C is part of the mandelbrot set
      * Depending on how deep we go, we may reach different certainties as to being part of the set or not
      * @param Z - Starting point of the sequence (0+i0) or previous complex in the sequence
@@ -62,18 +74,228 @@ public final class MandelUtil {
      */
     public static int escapeTimeAlgorithm(ComplexNumber Z, ComplexNumber constant, int iterationMax)
     {
-        ComplexNumber nextIteration = mandelbrotSequence(Z, constant);
+        return escapeTime(Z.getReal(), Z.getImaginary(), constant.getReal(), constant.getImaginary(), iterationMax);
+    }
+
+    /**
+     * Escape time algorithm on primitive values, this is the hot path of the renderer and must never allocate
+     * Zn+1 = Zn² + C is expanded to (x² - y² + cx) + i(2xy + cy) and the sequence escapes once x² + y² > 4,
+     * which is |Zn| > 2 without the square root
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReal - real part of the point we wish to test
+     * @param cImaginary - imaginary part of the point we wish to test
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @return - How certain we are that the sequence is stable, same as {@link #escapeTimeAlgorithm}
+     */
+    public static int escapeTime(double zReal, double zImaginary, double cReal, double cImaginary, int iterationMax)
+    {
+        //Z1
+        double x = zReal*zReal - zImaginary*zImaginary + cReal;
+        double y = 2*zReal*zImaginary + cImaginary;
+        double x2 = x*x;
+        double y2 = y*y;
+        int i = 0;
+
+        while (i < iterationMax){
+            if(x2 + y2 > 4) //x² + y² > 4
+                return i;
+
+            y = 2*x*y + cImaginary;
+            x = x2 - y2 + cReal;
+            x2 = x*x;
+            y2 = y*y;
+            i++;
+        }
+
+        return i;
+    }
+
+    /*
+     *
+     * Points inside the set are the most expensive ones: they always run up to the iteration limit.
+     * Two shortcuts avoid most of that work:
+     *
+     * - The main cardioid and the period 2 bulb are the two largest parts of the set and both have a closed form,
+     *   a point inside them is in the set without iterating (only when Z0 = 0, otherwise the set has another shape)
+     * - A bounded sequence usually falls into a cycle. Brent's method keeps one term and compares it to the following ones
+     *   over windows doubling in size, once a term comes back the sequence can never escape
+     *
+     * */
+
+    /**
+     * Escape time algorithm with the early outs for points inside the set
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReal - real part of the point we wish to test
+     * @param cImaginary - imaginary part of the point we wish to test
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @return - same as {@link #escapeTime(double, double, double, double, int)}
+     */
+    public static int escapeTime(double zReal, double zImaginary, double cReal, double cImaginary, int iterationMax,
+                                 boolean checkBulbs, boolean checkPeriod)
+    {
+        if(checkBulbs && isInMainBulbs(cReal, cImaginary))
+            return iterationMax;
+
+        if(!checkPeriod)
+            return escapeTime(zReal, zImaginary, cReal, cImaginary, iterationMax);
+
+        double x = zReal*zReal - zImaginary*zImaginary + cReal;
+        double y = 2*zReal*zImaginary + cImaginary;
+        double x2 = x*x;
+        double y2 = y*y;
+        double cycleX = x; //term compared to the following ones
+        double cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
         int i = 0;
 
         while (i < iterationMax){
-            if(ComplexUtil.absoluteComplex(nextIteration) > 2 //|Zn| > 2
-                    || nextIteration.getReal()*nextIteration.getReal() + nextIteration.getImaginary()*nextIteration.getImaginary() > 4) //x² + y² > 4
+            if(x2 + y2 > 4)
                 return i;
 
-            nextIteration = mandelbrotSequence(nextIteration, constant);
+            y = 2*x*y + cImaginary;
+            x = x2 - y2 + cReal;
+            x2 = x*x;
+            y2 = y*y;
             i++;
+
+            if(Math.abs(x - cycleX) + Math.abs(y - cycleY) < PERIOD_EPSILON) //came back, it will cycle forever
+                return iterationMax;
+
+            if(++sinceCheck == window)
+            {
+                sinceCheck = 0;
+                window <<= 1;
+                cycleX = x;
+                cycleY = y;
+            }
         }
 
         return i;
     }
+
+    /*
+     *
+     * The escape time is a whole number, so neighbouring pixels with the same count get the same color and the image
+     * shows bands. How far past the bailout the escaping term landed tells how close the point was to escaping one
+     * iteration earlier: n + 1 - log2(log2|Zn|) varies continuously from one band to the next.
+     *
+     * */
+
+    /**
+     * Escape time algorithm with a continuous count, for band free coloring
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReal - real part of the point we wish to test
+     * @param cImaginary - imaginary part of the point we wish to test
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param checkBulbs - skip points of the main cardioid and period 2 bulb, only valid for Z0 = 0
+     * @param checkPeriod - stop as soon as the sequence cycles
+     * @return - the escape time of {@link #escapeTime(double, double, double, double, int, boolean, boolean)} plus a fraction
+     * in [0, 1), iterationMax if the sequence is stable
+     */
+    public static double smoothEscapeTime(double zReal, double zImaginary, double cReal, double cImaginary, int iterationMax,
+                                          boolean checkBulbs, boolean checkPeriod)
+    {
+        return smoothEscapeTime(zReal, zImaginary, cReal, cImaginary, iterationMax, checkBulbs, checkPeriod, null);
+    }
+
+    /**
+     * Same as {@link #smoothEscapeTime(double, double, double, double, int, boolean, boolean)}, counting the work the early outs saved
+     * @param skipped - iterations the early outs did not run, up to the limit, are added to its first element, null if not counted
+     */
+    public static double smoothEscapeTime(double zReal, double zImaginary, double cReal, double cImaginary, int iterationMax,
+                                          boolean checkBulbs, boolean checkPeriod, long[] skipped)
+    {
+        if(checkBulbs && isInMainBulbs(cReal, cImaginary))
+            return skip(iterationMax, 0, skipped);
+
+        double x = zReal*zReal - zImaginary*zImaginary + cReal;
+        double y = 2*zReal*zImaginary + cImaginary;
+        double x2 = x*x;
+        double y2 = y*y;
+        double cycleX = x;
+        double cycleY = y;
+        int window = 1;
+        int sinceCheck = 0;
+        int i = 0;
+
+        while (i < iterationMax){
+            if(x2 + y2 > 4)
+                return smoothCount(i, x2 + y2);
+
+            y = 2*x*y + cImaginary;
+            x = x2 - y2 + cReal;
+            x2 = x*x;
+            y2 = y*y;
+            i++;
+
+            if(checkPeriod)
+            {
+                if(Math.abs(x - cycleX) + Math.abs(y - cycleY) < PERIOD_EPSILON)
+                    return skip(iterationMax, i, skipped);
+
+                if(++sinceCheck == window)
+                {
+                    sinceCheck = 0;
+                    window <<= 1;
+                    cycleX = x;
+                    cycleY = y;
+                }
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Continuous count of an escaped sequence
+     * @param count - escape time
+     * @param modulus - x² + y² of the term that escaped
+     * @return - count plus a fraction in [0, 1), the fraction is clamped for terms that landed beyond 4
+     */
+    public static double smoothCount(int count, double modulus) {
+        if(!(modulus < 16)) //beyond the table, the fraction would be negative
+            return count;
+
+        //interpolated from the table, two logarithms per pixel would cost more than the iterations of most of them
+        double position = (modulus - 4) * (FRACTION_STEPS / 12.0);
+        int i = Math.max(0, (int) position);
+        double fraction = FRACTIONS[i] + (position - i) * (FRACTIONS[Math.min(i + 1, FRACTION_STEPS)] - FRACTIONS[i]);
+
+        return Math.min(count + Math.max(0, fraction), Math.nextDown(count + 1.0)); //the whole part stays the escape time
+    }
+
+    /**
+     * Early out of the escape time algorithm
+     * @param iterationMax - How deep we go down the rabbit hole
+     * @param reached - iterations run before the sequence was proven bounded
+     * @param skipped - the iterations left are added to its first element, null if not counted
+     * @return - iterationMax
+     */
+    public static double skip(int iterationMax, int reached, long[] skipped) {
+        if(skipped != null)
+            skipped[0] += iterationMax - reached;
+
+        return iterationMax;
+    }
+
+    /**
+     * Checks if C is in the main cardioid or in the period 2 bulb on its left
+     * @param cReal - real part of C
+     * @param cImaginary - imaginary part of C
+     * @return - true if the sequence starting at 0 is bounded
+     */
+    public static boolean isInMainBulbs(double cReal, double cImaginary) {
+        double y2 = cImaginary*cImaginary;
+        double shifted = cReal - 0.25;
+        double q = shifted*shifted + y2;
+
+        return q*(q + shifted) <= 0.25*y2 //main cardioid
+                || (cReal + 1)*(cReal + 1) + y2 <= 0.0625; //circle of radius 1/4 around -1
+    }
 }
@@ -0,0 +1,127 @@
+package com.gmarshall.mandelbrot.util;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options of the entry points, all given as --name value
+ */
+public final class Options {
+
+    private Options() {
+    }
+
+    /**
+     * @param args - command line arguments
+     * @return - value of each option by name, without the dashes, the last one wins for an option given twice
+     * @throws IllegalArgumentException - if an argument is not an option or an option has no value
+     */
+    public static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if(!args[i].startsWith("--") || i + 1 == args.length)
+                throw new IllegalArgumentException("Expected --option value, got " + args[i]);
+
+            options.put(args[i].substring(2), args[++i]);
+        }
+
+        return options;
+    }
+
+    /**
+     * @param options - parsed options
+     * @param name - option name, without the dashes
+     * @param defaultValue - value when the option is not given
+     * @return - whole number value of the option
+     * @throws IllegalArgumentException - if the value is not a whole number
+     */
+    public static int getInt(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue);
+
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("--" + name + " must be a whole number: " + value);
+        }
+    }
+
+    /**
+     * @param options - parsed options
+     * @param name - option name, without the dashes
+     * @param defaultValue - value when the option is not given
+     * @return - numeric value of the option
+     * @throws IllegalArgumentException - if the value is not a number
+     */
+    public static double getDouble(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue);
+
+        try
+        {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("--" + name + " must be a number: " + value);
+        }
+    }
+
+    /**
+     * @param options - parsed options
+     * @param name - option name, without the dashes
+     * @param defaultValue - value when the option is not given
+     * @return - real and imaginary parts of a complex number given as re,im, with all their digits
+     * @throws IllegalArgumentException - if the value is not two numbers separated by a comma
+     */
+    public static BigDecimal[] getComplex(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue);
+        String[] parts = value.split(",");
+
+        try
+        {
+            if(parts.length == 2)
+                return new BigDecimal[] {new BigDecimal(parts[0].trim()), new BigDecimal(parts[1].trim())};
+        }
+        catch (NumberFormatException e)
+        {
+            //reported below
+        }
+
+        throw new IllegalArgumentException("--" + name + " must be re,im: " + value);
+    }
+
+    /**
+     * @param options - parsed options
+     * @param name - option name, without the dashes
+     * @param defaultValue - value when the option is not given
+     * @return - width and height given as WxH
+     * @throws IllegalArgumentException - if the value is not two whole numbers of at least 1 separated by an x
+     */
+    public static int[] getSize(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue);
+        String[] parts = value.split("x");
+
+        try
+        {
+            if(parts.length == 2)
+            {
+                int width = Integer.parseInt(parts[0]);
+                int height = Integer.parseInt(parts[1]);
+
+                if(width >= 1 && height >= 1)
+                    return new int[] {width, height};
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            //reported below
+        }
+
+        throw new IllegalArgumentException("--" + name + " must be WxH with both at least 1: " + value);
+    }
+}
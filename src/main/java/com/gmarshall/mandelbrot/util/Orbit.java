@@ -0,0 +1,77 @@
+package com.gmarshall.mandelbrot.util;
+
+import java.util.Arrays;
+
+/**
+ * Sequence of complex numbers from Z and C, Zn = (Zn-1)² + C, kept in primitive arrays
+ * The arrays are reused from one computation to the next and only grow with the terms actually kept,
+ * so dragging a point allocates nothing once the orbit has been seen at its longest.
+ *
+ * The orbit ends at the first term past radius 2: the sequence escapes from there, every later term is further out
+ * and soon Infinity or NaN. Bounded orbits run to the iteration limit.
+ */
+public final class Orbit {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] real = new double[INITIAL_CAPACITY];
+    private double[] imaginary = new double[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Computes the orbit again, replacing the previous terms
+     * @param zReal - real part of Z0
+     * @param zImaginary - imaginary part of Z0
+     * @param cReal - real part of C
+     * @param cImaginary - imaginary part of C
+     * @param iterationsMax - maximum number of terms, Z0 included
+     */
+    public void compute(double zReal, double zImaginary, double cReal, double cImaginary, int iterationsMax) {
+        double x = zReal;
+        double y = zImaginary;
+        length = 0;
+
+        while (length < iterationsMax)
+        {
+            if(length == real.length)
+            {
+                int capacity = (int) Math.min((long) real.length * 2, Integer.MAX_VALUE - 8);
+                real = Arrays.copyOf(real, capacity);
+                imaginary = Arrays.copyOf(imaginary, capacity);
+            }
+
+            real[length] = x;
+            imaginary[length++] = y;
+
+            if(x*x + y*y > 4) //escaped
+                return;
+
+            double nextX = x*x - y*y + cReal;
+            y = 2*(x*y) + cImaginary;
+            x = nextX;
+        }
+    }
+
+    /**
+     * @return - number of terms, Z0 included
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @param n - index of the term, 0 for Z0
+     * @return - real part of Zn
+     */
+    public double getReal(int n) {
+        return real[n];
+    }
+
+    /**
+     * @param n - index of the term, 0 for Z0
+     * @return - imaginary part of Zn
+     */
+    public double getImaginary(int n) {
+        return imaginary[n];
+    }
+}
@@ -0,0 +1,303 @@
+package com.gmarshall.mandelbrot.util;
+
+import com.gmarshall.mandelbrot.render.ReferenceOrbit;
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Immutable state of one view of the graph: which point of the set is in the middle of the screen, the zoom,
+ * the red and green points and the iteration limit
+ * Every change returns a new viewport, so a snapshot handed to a render thread never changes under it
+ * and several viewports can be rendered at the same time without sharing anything.
+ * The center keeps as many digits as the zoom needs, so the screen can zoom past the precision of doubles
+ * where the frame is rendered as a perturbation of the center, see {@link ViewParams#deep}.
+ */
+public final class Viewport {
+
+    public static final int DEFAULT_ZOOM = 100;
+    private static final double MIN_ZOOM = 1; //the whole set in two pixels
+    private static final double SCREEN_LIMIT = 1 << 24; //far off screen, positions past it are clamped so lines and dots drawn there never overflow
+    private static final double JULIA_SPAN = 4; //grid units across the smaller side of a julia view, the whole set fits in |Z| <= 2
+
+    private final int width;
+    private final int height;
+    private final BigDecimal centerReal; //point of the set in the middle of the screen
+    private final BigDecimal centerImaginary;
+    private final double zoom; //ie how many pixels between grid units
+    private final double zReal; //red dot
+    private final double zImaginary;
+    private final double cReal; //green dot
+    private final double cImaginary;
+    private final int iterationsMax; //how deep we go in the mandelbrot set
+
+    /**
+     * Viewport with Z at the origin and C at -1
+     * @param width - screen width
+     * @param height - screen height
+     * @param real - real part of the point in the middle of the screen
+     * @param imaginary - imaginary part of the point in the middle of the screen
+     * @param zoom - pixels per grid unit
+     * @param iterationsMax - iteration limit
+     */
+    public Viewport(int width, int height, BigDecimal real, BigDecimal imaginary, double zoom, int iterationsMax) {
+        this(width, height, real, imaginary, zoom, 0, 0, -1, 0, Math.max(iterationsMax, 1));
+    }
+
+    private Viewport(int width, int height, BigDecimal centerReal, BigDecimal centerImaginary, double zoom,
+                     double zReal, double zImaginary, double cReal, double cImaginary, int iterationsMax) {
+        this.width = width;
+        this.height = height;
+        this.centerReal = centerReal;
+        this.centerImaginary = centerImaginary;
+        this.zoom = zoom;
+        this.zReal = zReal;
+        this.zImaginary = zImaginary;
+        this.cReal = cReal;
+        this.cImaginary = cImaginary;
+        this.iterationsMax = iterationsMax;
+    }
+
+    /**
+     * @param width - screen width
+     * @param height - screen height
+     * @return - startup view, the grid origin in the middle of the screen with one iteration
+     */
+    public static Viewport initial(int width, int height) {
+        return new Viewport(width, height, BigDecimal.ZERO, BigDecimal.ZERO, DEFAULT_ZOOM, 1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public BigDecimal getCenterReal() {
+        return centerReal;
+    }
+
+    public BigDecimal getCenterImaginary() {
+        return centerImaginary;
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * @return - screen x of the grid origin, clamped far off the screen
+     */
+    public int getGridCenterX() {
+        return fromCoordsToScreenPos(0, true);
+    }
+
+    /**
+     * @return - screen y of the grid origin, clamped far off the screen
+     */
+    public int getGridCenterY() {
+        return fromCoordsToScreenPos(0, false);
+    }
+
+    public int getZPosX() {
+        return fromCoordsToScreenPos(zReal, true);
+    }
+
+    public int getZPosY() {
+        return fromCoordsToScreenPos(-zImaginary, false);
+    }
+
+    public int getCPosX() {
+        return fromCoordsToScreenPos(cReal, true);
+    }
+
+    public int getCPosY() {
+        return fromCoordsToScreenPos(-cImaginary, false);
+    }
+
+    public int getIterationsMax() {
+        return iterationsMax;
+    }
+
+    //region position conversion
+
+    /**
+     * Generates a string for Z position on the graph
+     * @return - Z: X= x.x / Y= y.y
+     */
+    public String convertXToCoordsString() {
+        return "Z: X= " + zReal + " / Y= " + zImaginary;
+    }
+
+    /**
+     * Generates a string for C position on the graph
+     * @return - C: X= x.x / Y= y.y
+     */
+    public String convertCToCoordsString() {
+        return "C= " + cReal + " / Y= " + cImaginary;
+    }
+
+    /**
+     * Takes the screen position of a point with the conversion axis and returns the axis position depending on the zoom level
+     * @param screenPos - point screen position coordinate
+     * @param xAxis - axis in which to convert
+     * @return - grid coordinate of the point, rounded to a double
+     */
+    public double fromScreenPosToCoords(int screenPos, boolean xAxis) {
+        if(xAxis)
+        {
+            return centerReal.doubleValue() + (screenPos - width /2 - snap(originX())) / zoom;
+        }
+        else
+        {
+            return -centerImaginary.doubleValue() + (screenPos - height /2 - snap(originY())) / zoom;
+        }
+    }
+
+    /**
+     * Converts grid coordinates to screen position
+     * @param coord - coordinate to convert
+     * @param xAxis - axis in which to convert
+     * @return - screen position, clamped far off the screen
+     */
+    public int fromCoordsToScreenPos(double coord, boolean xAxis) {
+        double pos;
+
+        if(xAxis)
+        {
+            pos = width /2 + (coord - centerReal.doubleValue()) * zoom + snap(originX());
+        }
+        else
+        {
+            pos = height /2 + (coord + centerImaginary.doubleValue()) * zoom + snap(originY());
+        }
+
+        return (int) Math.max(-SCREEN_LIMIT, Math.min(SCREEN_LIMIT, Math.floor(pos)));
+    }
+
+    /**
+     * @return - screen x of the grid origin for the exact center, a fraction of a pixel off after clicks and zooms
+     */
+    private double originX() {
+        return width /2 - centerReal.doubleValue() * zoom;
+    }
+
+    /**
+     * @return - screen y of the grid origin for the exact center
+     */
+    private double originY() {
+        return height /2 + centerImaginary.doubleValue() * zoom;
+    }
+
+    /**
+     * The grid origin is moved to the nearest whole pixel below {@link ViewParams#DEEP_ZOOM}, so the grid anchored
+     * tiles of the tile cache keep covering the same points, deeper views are centered on the exact center
+     * @param origin - screen position of the grid origin for the exact center
+     * @return - pixels the screen is shifted by
+     */
+    private double snap(double origin) {
+        return zoom < ViewParams.DEEP_ZOOM ? Math.rint(origin) - origin : 0;
+    }
+
+    //endregion
+
+    /**
+     * Computes the sequence of complex numbers from the positions of C and Z
+     * @param orbit - orbit to fill with at most iterationsMax terms, starting with Z
+     */
+    public void computeOrbit(Orbit orbit) {
+        orbit.compute(zReal, zImaginary, cReal, cImaginary, iterationsMax);
+    }
+
+    /**
+     * Zooms up to {@link ViewParams#DEEP_ZOOM} are rendered with the pixel coordinates of the engine, the grid origin
+     * on a whole pixel, deeper ones as a perturbation of the center, whose reference orbit is computed here.
+     * @return - parameters of this view for the render engine
+     */
+    public ViewParams toViewParams() {
+        if(zoom < ViewParams.DEEP_ZOOM)
+            return new ViewParams(width, height, Math.rint(originX()), Math.rint(originY()), zoom, zReal, -zImaginary, iterationsMax);
+
+        return ViewParams.deep(width, height, centerReal, centerImaginary, zoom, zReal, zImaginary, iterationsMax);
+    }
+
+    /**
+     * @param width - julia view width
+     * @param height - julia view height
+     * @return - parameters of the julia set of C for the render engine, the grid origin in the middle of the view
+     */
+    public ViewParams toJuliaParams(int width, int height) {
+        return ViewParams.julia(width, height, width /2, height /2, Math.min(width, height) / JULIA_SPAN,
+                cReal, -cImaginary, iterationsMax);
+    }
+
+    /**
+     * @param other - another view
+     * @return - true if both views draw the axes at the same place
+     */
+    public boolean sameGrid(Viewport other) {
+        return other != null && zoom == other.zoom
+                && centerReal.compareTo(other.centerReal) == 0 && centerImaginary.compareTo(other.centerImaginary) == 0;
+    }
+
+    //region changes
+
+    /**
+     * @param changeValue - change for the iteration limit
+     * @return - this view with the new iteration limit, never below one
+     */
+    public Viewport withIterationsChanged(int changeValue) {
+        return new Viewport(width, height, centerReal, centerImaginary, zoom, zReal, zImaginary, cReal, cImaginary,
+                Math.max(iterationsMax + changeValue, 1));
+    }
+
+    /**
+     * @param x - new screen x of the red dot
+     * @param y - new screen y of the red dot
+     * @return - this view with Z moved
+     */
+    public Viewport withZ(int x, int y) {
+        return new Viewport(width, height, centerReal, centerImaginary, zoom, fromScreenPosToCoords(x, true), -fromScreenPosToCoords(y, false),
+                cReal, cImaginary, iterationsMax);
+    }
+
+    /**
+     * @param x - new screen x of the green dot
+     * @param y - new screen y of the green dot
+     * @return - this view with C moved
+     */
+    public Viewport withC(int x, int y) {
+        return new Viewport(width, height, centerReal, centerImaginary, zoom, zReal, zImaginary,
+                fromScreenPosToCoords(x, true), -fromScreenPosToCoords(y, false), iterationsMax);
+    }
+
+    /**
+     * Centers the screen on the clicked point
+     * The offset is added to the center in full precision, rounded to the digits the zoom tells apart
+     * @param x - clicked screen x
+     * @param y - clicked screen y
+     * @return - the shifted view
+     */
+    public Viewport focusedOn(int x, int y) {
+        MathContext context = new MathContext(ReferenceOrbit.digitsFor(zoom, Math.max(width, height)));
+        BigDecimal real = centerReal.add(new BigDecimal((x - width /2) / zoom), context);
+        BigDecimal imaginary = centerImaginary.subtract(new BigDecimal((y - height /2) / zoom), context);
+
+        return new Viewport(width, height, real, imaginary, zoom, zReal, zImaginary, cReal, cImaginary, iterationsMax);
+    }
+
+    /**
+     * Zooms into the set around the middle of the screen
+     * @param factor - zoom multiplier, below one to zoom out
+     * @return - the zoomed view
+     */
+    public Viewport zoomedBy(double factor) {
+        return new Viewport(width, height, centerReal, centerImaginary, Math.max(zoom * factor, MIN_ZOOM), zReal, zImaginary,
+                cReal, cImaginary, iterationsMax);
+    }
+
+    //endregion
+}
@@ -0,0 +1,59 @@
+package com.gmarshall.mandelbrot.animation;
+
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames reprojected from a master must look like the frames rendered from scratch, see {@link Reprojector}
+ */
+class ReprojectorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final double MAX_DIFFERENT = 0.01; //share of the pixels of a frame whose escape time may differ
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void reprojectedFramesMatchFramesFromScratch() {
+        ZoomPath path = new ZoomPath(List.of(new Keyframe(0, -0.745, 0.1, 400, 300), new Keyframe(40, -0.7445, 0.1005, 800, 400)));
+        Reprojector reprojector = new Reprojector(engine, path, WIDTH, HEIGHT, true);
+        IterationField reprojected = new IterationField(WIDTH, HEIGHT);
+        IterationField scratch = new IterationField(WIDTH, HEIGHT);
+
+        for (int frame = 0; frame < path.getFrameCount(); frame++)
+        {
+            reprojector.render(frame, reprojected);
+            engine.render(path.view(frame, WIDTH, HEIGHT), scratch, () -> false);
+
+            int different = 0;
+
+            for (int i = 0; i < WIDTH * HEIGHT; i++) //filaments thinner than the master samples are lost, hence a share and not equality
+                if(reprojected.getCounts()[i] != scratch.getCounts()[i])
+                    different++;
+
+            double share = (double) different / (WIDTH * HEIGHT);
+            assertTrue(share <= MAX_DIFFERENT, "frame " + frame + ": " + different + " pixels differ");
+        }
+
+        assertTrue(reprojector.getMasters() >= 1);
+        assertTrue(reprojector.getReused() > reprojector.getComputed(), "most pixels are reprojected");
+    }
+}
@@ -0,0 +1,117 @@
+package com.gmarshall.mandelbrot.cluster;
+
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tiles of a worker lost during a job are rendered by the others, and the assembled image is the one rendered in one go
+ */
+class CoordinatorTest {
+
+    private static final int WIDTH = 256;
+    private static final int HEIGHT = 192;
+    private static final int TILE = 16;
+    private static final int TILES = WIDTH / TILE * (HEIGHT / TILE);
+    private static final int KILL_AFTER = 8; //tiles stored before one of the workers goes away
+
+    private RenderEngine engine;
+    private RenderEngine survivorEngine;
+    private RenderEngine doomedEngine;
+
+    @BeforeEach
+    void createEngines() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+        survivorEngine = new RenderEngine(1);
+        doomedEngine = new RenderEngine(1);
+    }
+
+    @AfterEach
+    void shutdownEngines() {
+        engine.shutdown();
+        survivorEngine.shutdown();
+        doomedEngine.shutdown();
+    }
+
+    @Test
+    @Timeout(60) //lost tiles never handed out again would block the render forever
+    void tilesOfALostWorkerAreRenderedByTheSurvivor() throws IOException, InterruptedException {
+        Job job = new Job(WIDTH, HEIGHT, "-0.745", "0.1", 2000, 0, 0, 2000);
+        int[] counts = new int[WIDTH * HEIGHT];
+        AtomicInteger stored = new AtomicInteger();
+        Thread survivor;
+        Thread doomed;
+
+        try (Coordinator coordinator = new Coordinator(0, 10_000))
+        {
+            survivor = serve(new RenderWorker(survivorEngine, "survivor"), coordinator.getPort());
+            doomed = serve(new RenderWorker(doomedEngine, "doomed"), coordinator.getPort());
+            assertTrue(coordinator.awaitWorkers(2, 10_000));
+
+            coordinator.render(job, TILE, (x, y, width, height, tileCounts, tileSmooth) -> {
+                for (int row = 0; row < height; row++)
+                    System.arraycopy(tileCounts, row * width, counts, (y + row) * WIDTH + x, width);
+
+                if(stored.incrementAndGet() == KILL_AFTER) //the tile it is rendering is its last, the ones it was sent are lost with it
+                    doomedEngine.shutdown();
+            });
+
+            doomed.join(10_000);
+            assertFalse(doomed.isAlive());
+
+            Coordinator.WorkerStats survivorStats = stats(coordinator, "survivor");
+            Coordinator.WorkerStats doomedStats = stats(coordinator, "doomed");
+
+            assertFalse(doomedStats.isConnected());
+            assertTrue(survivorStats.isConnected());
+            assertTrue(doomedStats.getTiles() < TILES - KILL_AFTER, "the doomed worker went away mid-job");
+            assertEquals(TILES, survivorStats.getTiles() + doomedStats.getTiles(), "every tile is stored once");
+        }
+
+        survivor.join(10_000);
+        assertFalse(survivor.isAlive(), "the survivor leaves on goodbye");
+
+        ViewParams view = job.toView();
+        IterationField field = new IterationField(WIDTH, HEIGHT);
+        engine.render(view, field, () -> false);
+
+        assertArrayEquals(field.getCounts(), counts);
+    }
+
+    private static Thread serve(RenderWorker worker, int port) {
+        Thread thread = new Thread(() -> {
+            try
+            {
+                worker.serve("localhost", port);
+            }
+            catch (IOException | RuntimeException e) //the doomed worker fails on its next tile
+            {
+                //gone, its tiles are handed out again
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    private static Coordinator.WorkerStats stats(Coordinator coordinator, String name) {
+        for (Coordinator.WorkerStats worker : coordinator.getWorkers())
+            if(worker.getName().equals(name))
+                return worker;
+
+        throw new AssertionError("No worker " + name);
+    }
+}
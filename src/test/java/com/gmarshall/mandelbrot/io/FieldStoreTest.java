@@ -0,0 +1,102 @@
+package com.gmarshall.mandelbrot.io;
+
+import com.gmarshall.mandelbrot.render.Colorizer;
+import com.gmarshall.mandelbrot.render.IterationField;
+import com.gmarshall.mandelbrot.render.Palette;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.ViewParams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A store stopped part way resumes with the tiles still missing, and exports the image rendered in one go
+ */
+class FieldStoreTest {
+
+    private static final int WIDTH = 600; //3 x 2 tiles, the right and bottom ones cut by the image edges
+    private static final int HEIGHT = 300;
+    private static final int ITERATIONS = 300;
+    private static final String JOB = "test job";
+
+    @TempDir
+    Path directory;
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void stoppedRenderResumesWithTheMissingTiles() throws IOException {
+        ViewParams view = ViewParams.centered(WIDTH, HEIGHT, -0.745, 0.1, 800, 0, 0, ITERATIONS);
+        Path file = directory.resolve("field.store");
+
+        try (FieldStore store = FieldStore.open(file, view, JOB))
+        {
+            assertEquals(6, store.getTileCount());
+            assertEquals(0, store.getCompletedTiles());
+            assertEquals(2, store.render(engine, () -> store.getCompletedTiles() == 2));
+        }
+
+        Colorizer colorizer = new Colorizer(Palette.RAINBOW, true, ITERATIONS);
+        int[] exported = new int[WIDTH * HEIGHT];
+
+        try (FieldStore store = FieldStore.open(file, view, JOB))
+        {
+            assertEquals(2, store.getCompletedTiles());
+            assertThrows(IllegalStateException.class, () -> store.export(colorizer, (pixels, rows) -> {}));
+            assertEquals(4, store.render(engine));
+            assertEquals(6, store.getCompletedTiles());
+
+            int[] row = {0};
+            store.export(colorizer, (pixels, rows) -> {
+                System.arraycopy(pixels, 0, exported, row[0] * WIDTH, rows * WIDTH);
+                row[0] += rows;
+            });
+            assertEquals(HEIGHT, row[0]);
+        }
+
+        IterationField field = new IterationField(WIDTH, HEIGHT);
+        int[] direct = new int[WIDTH * HEIGHT];
+        engine.render(view, field, () -> false);
+        engine.colorize(field, direct, colorizer);
+
+        assertArrayEquals(direct, exported);
+    }
+
+    @Test
+    void storeOfAnotherRenderIsRejected() throws IOException {
+        ViewParams view = ViewParams.centered(WIDTH, HEIGHT, -0.745, 0.1, 800, 0, 0, ITERATIONS);
+        Path file = directory.resolve("field.store");
+
+        try (FieldStore store = FieldStore.open(file, view, JOB))
+        {
+            store.render(engine, () -> store.getCompletedTiles() == 1);
+        }
+
+        assertThrows(IOException.class, () -> FieldStore.open(file, view, "another job"));
+        assertThrows(IOException.class, () -> FieldStore.open(file, ViewParams.centered(WIDTH, HEIGHT, -0.745, 0.1, 1600, 0, 0, ITERATIONS), JOB));
+        assertThrows(IOException.class, () -> FieldStore.open(file, ViewParams.centered(WIDTH, HEIGHT + 1, -0.745, 0.1, 800, 0, 0, ITERATIONS), JOB));
+
+        try (FieldStore store = FieldStore.open(file, view, JOB)) //left untouched by the rejected ones
+        {
+            assertEquals(1, store.getCompletedTiles());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Views requested as suppliers are built on the render thread, and only for the requests that are not replaced first
+ */
+class AsyncRendererTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(1);
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void replacedRequestsAreNeverBuilt() throws InterruptedException {
+        AsyncRenderer renderer = new AsyncRenderer(engine, WIDTH, HEIGHT, () -> {});
+        ViewParams view = new ViewParams(WIDTH, HEIGHT, WIDTH /2, HEIGHT /2, 20, 0, 0, 50);
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch latestBuilt = new CountDownLatch(1);
+        AtomicInteger replacedBuilt = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        AtomicInteger builtOnCaller = new AtomicInteger();
+
+        renderer.request(() -> {
+            building.countDown();
+            await(release);
+            return view;
+        });
+        assertTrue(building.await(5, TimeUnit.SECONDS));
+
+        renderer.request(() -> {
+            replacedBuilt.incrementAndGet();
+            return view;
+        });
+        renderer.request(() -> {
+            if(Thread.currentThread() == caller)
+                builtOnCaller.incrementAndGet();
+
+            latestBuilt.countDown();
+            return view;
+        });
+        release.countDown();
+
+        assertTrue(latestBuilt.await(5, TimeUnit.SECONDS), "the latest request is built");
+        assertEquals(0, replacedBuilt.get(), "the replaced request is built");
+        assertEquals(0, builtOnCaller.get(), "views are built on the thread requesting them");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try
+        {
+            latch.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The cardioid and bulb check and the periodicity check must give the same escape times as the plain kernel,
+ * see the early outs of {@link com.gmarshall.mandelbrot.util.MandelUtil}, and the iterations they skip must be
+ * the ones the plain kernel runs on top of theirs, see {@link RenderStats}
+ */
+class EarlyOutTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+    private static final int ITERATIONS = 2000;
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    static Stream<Arguments> views() {
+        return Stream.of(
+                Arguments.of("whole set", new ViewParams(WIDTH, HEIGHT, WIDTH /2, HEIGHT /2, 60, 0, 0, ITERATIONS)),
+                Arguments.of("main cardioid", new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.2 * 400, HEIGHT /2, 400, 0, 0, ITERATIONS)),
+                Arguments.of("seahorse valley", new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.75 * 4000, HEIGHT /2 + 0.1 * 4000, 4000, 0, 0, ITERATIONS)),
+                Arguments.of("julia", ViewParams.julia(WIDTH, HEIGHT, WIDTH /2, HEIGHT /2, 60, -0.12, 0.75, ITERATIONS)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("views")
+    void scalarEarlyOutsMatchThePlainKernel(String name, ViewParams view) {
+        engine.setVectorKernel(false);
+        assertEarlyOutsMatch(view);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("views")
+    void vectorEarlyOutsMatchThePlainKernel(String name, ViewParams view) {
+        engine.setVectorKernel(RenderEngine.VECTOR_AVAILABLE);
+        assertEarlyOutsMatch(view);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("views")
+    void doubleEarlyOutsMatchThePlainKernel(String name, ViewParams view) {
+        engine.setPrecision(Precision.DOUBLE);
+        assertEarlyOutsMatch(view);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("views")
+    void doubleDoubleEarlyOutsMatchThePlainKernel(String name, ViewParams view) {
+        engine.setPrecision(Precision.DOUBLE_DOUBLE);
+        assertEarlyOutsMatch(view);
+    }
+
+    private void assertEarlyOutsMatch(ViewParams view) {
+        RenderStats plainStats = new RenderStats();
+        int[] plain = render(view, false, false, plainStats);
+
+        assertEquals(0, plainStats.getSkippedIterations());
+
+        String[] checks = {"bulb check", "periodicity check", "both checks"};
+        RenderStats stats = null;
+
+        for (int i = 0; i < checks.length; i++)
+        {
+            stats = new RenderStats();
+
+            assertArrayEquals(plain, render(view, i != 1, i != 0, stats), checks[i]);
+            assertEquals(plainStats.getIterations(), stats.getIterations() + stats.getSkippedIterations(), checks[i]);
+        }
+
+        assertTrue(stats.getIterations() < plainStats.getIterations(), "every view has points inside the set");
+    }
+
+    /**
+     * @return - escape times of the view with the given early outs
+     */
+    private int[] render(ViewParams view, boolean bulbs, boolean period, RenderStats stats) {
+        IterationField field = new IterationField(view.getWidth(), view.getHeight());
+
+        engine.setBulbCheck(bulbs);
+        engine.setPeriodicityCheck(period);
+        engine.render(view, field, 1, 0, () -> false, stats);
+
+        return field.getCounts();
+    }
+}
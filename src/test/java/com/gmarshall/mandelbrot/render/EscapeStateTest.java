@@ -0,0 +1,81 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Frames resumed from the sequences of the previous limit must be the frames computed from scratch, see {@link EscapeState}
+ */
+class EscapeStateTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void raisedLimitsMatchFramesFromScratch() {
+        assertRaisesMatch(new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.75 * 4000, HEIGHT /2 + 0.1 * 4000, 4000, 0, 0, 100));
+    }
+
+    @Test
+    void raisedLimitsMatchFramesFromScratchOnAJuliaSet() {
+        assertRaisesMatch(ViewParams.julia(WIDTH, HEIGHT, WIDTH /2, HEIGHT /2, 60, -0.12, 0.75, 100));
+    }
+
+    private void assertRaisesMatch(ViewParams first) {
+        EscapeState state = new EscapeState(WIDTH, HEIGHT);
+        IterationField resumed = new IterationField(WIDTH, HEIGHT);
+        IterationField scratch = new IterationField(WIDTH, HEIGHT);
+        engine.setPrecision(Precision.DOUBLE); //the state keeps doubles
+
+        for (int limit = first.getIterationsMax(); limit <= 400; limit += 30)
+        {
+            ViewParams view = withLimit(first, limit);
+            RenderStats stats = new RenderStats();
+
+            engine.resume(view, resumed, state, () -> false, stats);
+            engine.render(view, scratch, () -> false);
+
+            assertArrayEquals(scratch.getCounts(), resumed.getCounts(), "limit " + limit);
+
+            if(limit == first.getIterationsMax()) //nothing to resume yet, every escape time is either run or skipped
+                assertEquals(sum(scratch.getCounts()), stats.getIterations() + stats.getSkippedIterations());
+        }
+    }
+
+    private static long sum(int[] counts) {
+        long sum = 0;
+
+        for (int count : counts)
+            sum += count;
+
+        return sum;
+    }
+
+    /**
+     * @return - the view with another iteration limit
+     */
+    private static ViewParams withLimit(ViewParams view, int limit) {
+        if(view.isJulia())
+            return ViewParams.julia(view.getWidth(), view.getHeight(), view.getCenterX(), view.getCenterY(), view.getZoom(),
+                    view.getCReal(), view.getCImaginary(), limit);
+
+        return new ViewParams(view.getWidth(), view.getHeight(), view.getCenterX(), view.getCenterY(), view.getZoom(),
+                view.getZReal(), view.getZImaginary(), limit);
+    }
+}
@@ -0,0 +1,59 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Perturbation against the plain double precision kernel at a zoom both can handle, see {@link ReferenceOrbit}
+ */
+class PerturbationTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+    private static final int ITERATIONS = 2000;
+    private static final double MISMATCHES = 5e-3; //share of the pixels, about 0.1% near the boundary where both round differently
+    private static final String REAL = "-0.743643887037151"; //seahorse valley
+    private static final String IMAGINARY = "0.13182590420533";
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void perturbationMatchesDoublePrecision() {
+        //the plain kernel without early outs, to compare the same computation
+        engine.setBulbCheck(false);
+        engine.setPeriodicityCheck(false);
+        engine.setPrecision(Precision.DOUBLE);
+
+        int[] plain = new int[WIDTH * HEIGHT];
+        int[] deep = new int[WIDTH * HEIGHT];
+        ViewParams deepView = ViewParams.deep(WIDTH, HEIGHT, new BigDecimal(REAL), new BigDecimal(IMAGINARY), 1e5, 0, 0, ITERATIONS);
+
+        engine.render(ViewParams.centered(WIDTH, HEIGHT, Double.parseDouble(REAL), Double.parseDouble(IMAGINARY), 1e5, 0, 0, ITERATIONS), plain);
+        engine.render(deepView, deep);
+
+        int mismatches = 0;
+
+        for (int i = 0; i < plain.length; i++)
+            if(plain[i] != deep[i])
+                mismatches++;
+
+        assertEquals(Precision.PERTURBATION, engine.getPrecision(deepView));
+        assertTrue(mismatches <= MISMATCHES * plain.length, mismatches + " pixels differ from double precision");
+    }
+}
@@ -0,0 +1,161 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Number formats of the escape time, see {@link Precision}
+ * The vector loops of each format must give the same escape times as its scalar loop, pixel coordinates of the
+ * double-double format must hold the bits doubles round off, and the format must switch at the documented spacings,
+ * where the format picked for a view still agrees with double-double on almost every pixel.
+ */
+class PrecisionTest {
+
+    private static final int WIDTH = 203; //not a multiple of the lanes, the tails go through the scalar loops
+    private static final int HEIGHT = 61;
+    private static final int ITERATIONS = 1000;
+    private static final double RESOLVED = 0.01; //share of the pixels off by a band a format is still picked with, see Precision
+    private static final String REAL = "-0.743643887037158704752191506114774"; //seahorse valley, well inside the boundary
+    private static final String IMAGINARY = "0.131825904205311970493132056385139";
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Precision.class, names = {"FLOAT", "DOUBLE", "DOUBLE_DOUBLE"})
+    void vectorKernelMatchesScalarOnTheMandelbrotSet(Precision precision) {
+        assertVectorMatchesScalar(ViewParams.centered(WIDTH, HEIGHT, -0.75, 0.1, 2000, 0, 0, ITERATIONS), precision);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Precision.class, names = {"FLOAT", "DOUBLE", "DOUBLE_DOUBLE"})
+    void vectorKernelMatchesScalarOnAJuliaSet(Precision precision) {
+        assertVectorMatchesScalar(ViewParams.julia(WIDTH, HEIGHT, WIDTH /2.0, HEIGHT /2.0, 40, -0.12, 0.75, ITERATIONS), precision);
+    }
+
+    @Test
+    void vectorKernelMatchesScalarPastDoubles() {
+        double zoom = 1e11;
+        ViewParams view = ViewParams.centered(WIDTH, HEIGHT, Double.parseDouble(REAL), Double.parseDouble(IMAGINARY), zoom, 0, 0, 4 * ITERATIONS);
+
+        assertEquals(Precision.DOUBLE_DOUBLE, Precision.of(view));
+        assertVectorMatchesScalar(view, Precision.DOUBLE_DOUBLE);
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {1e9, 1e11})
+    void doubleDoubleCoordinatesMatchBigDecimal(double zoom) {
+        ViewParams view = ViewParams.centered(WIDTH, HEIGHT, Double.parseDouble(REAL), Double.parseDouble(IMAGINARY), zoom, 0, 0, ITERATIONS);
+        MathContext context = new MathContext(50);
+        BigDecimal center = new BigDecimal(view.getCenterX());
+        BigDecimal scale = new BigDecimal(zoom);
+
+        for (int x = 0; x < WIDTH; x++)
+        {
+            BigDecimal exact = new BigDecimal(x).subtract(center).divide(scale, context);
+            BigDecimal doubleDouble = new BigDecimal(view.real(x)).add(new BigDecimal(DoubleDoubleKernel.coordinateLo(x, view.getCenterX(), zoom)));
+            BigDecimal error = doubleDouble.subtract(exact).abs();
+
+            //106 bits, doubles alone are about 2^-53 off
+            assertTrue(error.compareTo(exact.abs().multiply(BigDecimal.valueOf(0x1p-100))) <= 0,
+                    "pixel " + x + " is " + error + " away from " + exact);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {100, 1e6, 1e9})
+    void pickedFormatResolvesItsView(double zoom) {
+        ViewParams view = ViewParams.centered(WIDTH * 2, HEIGHT * 4, -0.743643887037151, 0.13182590420533, zoom, 0, 0, ITERATIONS);
+
+        assertTrue(mismatches(view, Precision.of(view)) <= RESOLVED, Precision.of(view) + " at zoom " + zoom);
+    }
+
+    @Test
+    void floatsCannotResolveDeeperViews() {
+        ViewParams view = ViewParams.centered(WIDTH * 2, HEIGHT * 4, -0.743643887037151, 0.13182590420533, 1e6, 0, 0, ITERATIONS);
+
+        assertTrue(mismatches(view, Precision.FLOAT) > RESOLVED);
+    }
+
+    @Test
+    void formatSwitchesAtThePixelSpacings() {
+        assertEquals(Precision.FLOAT, Precision.of(viewWithSpacing(0x1p-10)));
+        assertEquals(Precision.DOUBLE, Precision.of(viewWithSpacing(Math.nextDown(0x1p-10))));
+        assertEquals(Precision.DOUBLE, Precision.of(viewWithSpacing(0x1p-30)));
+        assertEquals(Precision.DOUBLE_DOUBLE, Precision.of(viewWithSpacing(Math.nextDown(0x1p-30))));
+    }
+
+    @Test
+    void floatsStopAtTheirIterationLimit() {
+        assertEquals(Precision.FLOAT, Precision.of(new ViewParams(WIDTH, HEIGHT, 0, 0, 100, 0, 0, 1 << 24)));
+        assertEquals(Precision.DOUBLE, Precision.of(new ViewParams(WIDTH, HEIGHT, 0, 0, 100, 0, 0, (1 << 24) + 1)));
+    }
+
+    /**
+     * @return - share of the pixels of the view whose escape time in the format differs from double-double
+     */
+    private double mismatches(ViewParams view, Precision precision) {
+        int[] reference = new int[view.getWidth() * view.getHeight()];
+        int[] pixels = new int[reference.length];
+        int mismatches = 0;
+
+        engine.setPrecision(Precision.DOUBLE_DOUBLE);
+        engine.render(view, reference);
+        engine.setPrecision(precision);
+        engine.render(view, pixels);
+
+        for (int i = 0; i < pixels.length; i++)
+            if(pixels[i] != reference[i])
+                mismatches++;
+
+        return (double) mismatches / pixels.length;
+    }
+
+    private void assertVectorMatchesScalar(ViewParams view, Precision precision) {
+        assumeTrue(RenderEngine.VECTOR_AVAILABLE, "the JVM runs without jdk.incubator.vector");
+
+        engine.setPrecision(precision);
+        IterationField scalar = render(view, false);
+        IterationField vector = render(view, true);
+
+        assertArrayEquals(scalar.getCounts(), vector.getCounts(), precision + " escape times");
+        assertArrayEquals(scalar.getSmooth(), vector.getSmooth(), precision + " continuous escape times");
+    }
+
+    private IterationField render(ViewParams view, boolean vector) {
+        IterationField field = new IterationField(view.getWidth(), view.getHeight());
+
+        engine.setVectorKernel(vector);
+        engine.render(view, field, () -> false);
+
+        return field;
+    }
+
+    /**
+     * @return - view whose pixels are the given distance apart
+     */
+    private static ViewParams viewWithSpacing(double spacing) {
+        return new ViewParams(WIDTH, HEIGHT, WIDTH /2.0, HEIGHT /2.0, 1 / spacing, 0, 0, ITERATIONS);
+    }
+}
@@ -0,0 +1,89 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mariani-Silver subdivision against the brute force plotter, see {@link RenderMode#SUBDIVISION}
+ * Filled rectangles trust their border, so filaments and pinches thinner than a pixel inside a rectangle can be missed:
+ * views away from the boundary must match exactly, views across it may only lose a handful of pixels.
+ */
+class SubdivisionTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 270;
+    private static final double BOUNDARY_MISMATCHES = 5e-4; //share of the pixels, seahorse valley loses about 0.01% at this size
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void cardioidMatchesBruteForce() {
+        ViewParams view = new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.2 * 2000, HEIGHT /2, 2000, 0, 0, 500);
+
+        assertArrayEquals(render(view, RenderMode.BRUTE_FORCE), render(view, RenderMode.SUBDIVISION));
+    }
+
+    @Test
+    void cardioidMatchesBruteForceWithoutEarlyOuts() {
+        engine.setBulbCheck(false);
+        engine.setPeriodicityCheck(false);
+        ViewParams view = new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.2 * 2000, HEIGHT /2, 2000, 0, 0, 500);
+
+        assertArrayEquals(render(view, RenderMode.BRUTE_FORCE), render(view, RenderMode.SUBDIVISION));
+    }
+
+    @Test
+    void outsideMatchesBruteForce() {
+        ViewParams view = new ViewParams(WIDTH, HEIGHT, WIDTH /2 - 3 * 100, HEIGHT /2, 100, 0, 0, 500);
+
+        assertArrayEquals(render(view, RenderMode.BRUTE_FORCE), render(view, RenderMode.SUBDIVISION));
+    }
+
+    @Test
+    void defaultViewStaysCloseToBruteForce() {
+        assertCloseToBruteForce(new ViewParams(WIDTH, HEIGHT, WIDTH /2, HEIGHT /2, 100, 0, 0, 500));
+    }
+
+    @Test
+    void seahorseValleyStaysCloseToBruteForce() {
+        assertCloseToBruteForce(new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.75 * 20000, HEIGHT /2 + 0.1 * 20000, 20000, 0, 0, 500));
+    }
+
+    private void assertCloseToBruteForce(ViewParams view) {
+        int[] bruteForce = render(view, RenderMode.BRUTE_FORCE);
+        int[] subdivision = render(view, RenderMode.SUBDIVISION);
+        int mismatches = 0;
+
+        for (int i = 0; i < bruteForce.length; i++)
+            if(bruteForce[i] != subdivision[i])
+                mismatches++;
+
+        assertTrue(mismatches <= BOUNDARY_MISMATCHES * bruteForce.length, mismatches + " pixels differ from brute force");
+    }
+
+    /**
+     * @return - escape times of the view in the given mode
+     */
+    private int[] render(ViewParams view, RenderMode mode) {
+        IterationField field = new IterationField(view.getWidth(), view.getHeight());
+
+        engine.setMode(mode);
+        engine.render(view, field, () -> false);
+
+        return field.getCounts();
+    }
+}
@@ -0,0 +1,53 @@
+package com.gmarshall.mandelbrot.render;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Frames put together from cached tiles must be the frames computed from scratch, see {@link TileCache}
+ */
+class TileCacheTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+    private static final int ITERATIONS = 500;
+    private static final int PAN = 40;
+
+    private RenderEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        engine = new RenderEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @AfterEach
+    void shutdownEngine() {
+        engine.shutdown();
+    }
+
+    @Test
+    void panFramesMatchUncachedFrames() {
+        TileCache cache = new TileCache(16L << 20);
+        int[] cached = new int[WIDTH * HEIGHT];
+        int[] uncached = new int[WIDTH * HEIGHT];
+
+        for (int frame = 0; frame < 6; frame++)
+        {
+            ViewParams view = new ViewParams(WIDTH, HEIGHT, WIDTH /2 + 0.75 * 4000 + frame * PAN, HEIGHT /2 + 0.1 * 4000 + frame * PAN /2,
+                    4000, 0, 0, ITERATIONS);
+
+            engine.setTileCache(cache);
+            engine.render(view, cached);
+            engine.setTileCache(null);
+            engine.render(view, uncached);
+
+            assertArrayEquals(uncached, cached, "frame " + frame);
+        }
+
+        assertTrue(cache.getHits() > 0, "the pan never reused a tile");
+    }
+}
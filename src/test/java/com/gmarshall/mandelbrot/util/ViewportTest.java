@@ -0,0 +1,96 @@
+package com.gmarshall.mandelbrot.util;
+
+import com.gmarshall.mandelbrot.render.Precision;
+import com.gmarshall.mandelbrot.render.RenderEngine;
+import com.gmarshall.mandelbrot.render.TileCache;
+import com.gmarshall.mandelbrot.render.ViewParams;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Zooming the screen past the precision of doubles, see {@link Viewport}
+ */
+class ViewportTest {
+
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 900;
+
+    @Test
+    void zoomingInReachesEveryPrecision() {
+        Viewport viewport = seahorseValley();
+        boolean doubleDouble = false;
+
+        while (viewport.getZoom() < ViewParams.DEEP_ZOOM)
+        {
+            ViewParams view = viewport.toViewParams();
+
+            assertNull(view.getReference(), "zoom " + viewport.getZoom());
+            doubleDouble |= Precision.of(view) == Precision.DOUBLE_DOUBLE;
+            viewport = viewport.zoomedBy(2);
+        }
+
+        assertTrue(doubleDouble, "double-double is never picked on the way down");
+        assertNotNull(viewport.toViewParams().getReference(), "deep zooms are rendered as a perturbation of the center");
+    }
+
+    @Test
+    void clicksKeepTheDigitsOfDeepZooms() {
+        Viewport viewport = seahorseValley().zoomedBy(0x1p50);
+        Viewport focused = viewport.focusedOn(WIDTH /2 + 1, HEIGHT /2 - 1); //one pixel right and up
+
+        //doubles cannot even tell both centers apart
+        assertEquals(viewport.getCenterReal().doubleValue(), focused.getCenterReal().doubleValue());
+        assertOnePixelAway(viewport.getCenterReal(), focused.getCenterReal(), viewport.getZoom());
+        assertOnePixelAway(viewport.getCenterImaginary(), focused.getCenterImaginary(), viewport.getZoom());
+    }
+
+    @Test
+    void clicksAndZoomsKeepTheTileCache() {
+        RenderEngine engine = new RenderEngine(1);
+        engine.setTileCache(new TileCache(1 << 20));
+        Viewport viewport = Viewport.initial(WIDTH, HEIGHT);
+
+        try
+        {
+            for (int i = 0; i < 20; i++)
+            {
+                viewport = viewport.focusedOn(WIDTH /2 + 37 * (i % 3 - 1), HEIGHT /2 - 11 * (i % 5 - 2)).zoomedBy(i % 4 == 3 ? 0.5 : 2);
+                ViewParams view = viewport.toViewParams();
+
+                assertTrue(engine.usesTileCache(view), "origin " + view.getCenterX() + ", " + view.getCenterY() + " after " + (i + 1) + " clicks");
+                assertEquals(viewport.getGridCenterX(), (int) view.getCenterX(), "axes drawn where the frame has them");
+            }
+        }
+        finally
+        {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    void screenPositionsStayNearTheScreen() {
+        Viewport viewport = seahorseValley().zoomedBy(0x1p60);
+
+        assertTrue(Math.abs(viewport.getGridCenterX()) < Integer.MAX_VALUE /2, "grid origin");
+        assertTrue(Math.abs(viewport.getCPosX()) < Integer.MAX_VALUE /2, "green dot");
+        assertTrue(Math.abs(viewport.fromCoordsToScreenPos(8, true)) < Integer.MAX_VALUE /2, "last interval");
+    }
+
+    private static void assertOnePixelAway(BigDecimal from, BigDecimal to, double zoom) {
+        double pixels = to.subtract(from).doubleValue() * zoom;
+
+        assertEquals(1, pixels, 1e-9, "the center moved " + pixels + " pixels");
+    }
+
+    private static Viewport seahorseValley() {
+        return new Viewport(WIDTH, HEIGHT, new BigDecimal("-0.743643887037158704752191506114774"),
+                new BigDecimal("0.131825904205311970493132056385139"), Viewport.DEFAULT_ZOOM, 500);
+    }
+}